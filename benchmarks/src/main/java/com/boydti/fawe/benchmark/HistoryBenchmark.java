@@ -0,0 +1,72 @@
+package com.boydti.fawe.benchmark;
+
+import com.boydti.fawe.config.Settings;
+import com.boydti.fawe.object.change.MutableBlockChange;
+import com.boydti.fawe.object.changeset.MemoryOptimizedHistory;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Record and undo an edit of size^3 blocks at each history compression level
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HistoryBenchmark {
+
+    @Param({"0", "1", "4", "8"})
+    public int compression;
+
+    @Param({"64"})
+    public int size;
+
+    private MemoryFaweQueue queue;
+    private MemoryOptimizedHistory recorded;
+
+    @Setup(Level.Iteration)
+    public void setup() throws IOException {
+        Settings.HISTORY.COMPRESSION_LEVEL = compression;
+        queue = new MemoryFaweQueue("benchmark");
+        recorded = record();
+    }
+
+    @Benchmark
+    public MemoryOptimizedHistory record() {
+        MemoryOptimizedHistory history = new MemoryOptimizedHistory(null);
+        for (int y = 0; y < size; y++) {
+            for (int z = 0; z < size; z++) {
+                for (int x = 0; x < size; x++) {
+                    history.add(x, y, z, 1 << 4, (3 << 4) + (x & 1));
+                }
+            }
+        }
+        history.flush();
+        return history;
+    }
+
+    @Benchmark
+    public void undo() throws IOException {
+        Iterator<MutableBlockChange> iterator = recorded.getBlockIterator(false);
+        while (iterator.hasNext()) {
+            MutableBlockChange change = iterator.next();
+            queue.setBlock(change.x, change.y, change.z, change.id, change.data);
+        }
+        queue.flush();
+    }
+}
@@ -0,0 +1,194 @@
+package com.boydti.fawe.benchmark;
+
+import com.boydti.fawe.FaweCache;
+import com.boydti.fawe.example.CharFaweChunk;
+import com.boydti.fawe.example.MappedFaweQueue;
+import com.boydti.fawe.object.FaweChunk;
+import com.boydti.fawe.object.FaweQueue;
+import com.boydti.fawe.object.RunnableVal;
+import com.boydti.fawe.object.collection.LongLinkedHashMap;
+import com.boydti.fawe.util.MathMan;
+import com.sk89q.jnbt.CompoundTag;
+import java.io.File;
+
+/**
+ * A headless queue which stores the world in memory (no Bukkit / Forge / Sponge needed)<br>
+ *  - Chunks are char[16][4096] sections of combined ids (0 = air)<br>
+ *  - Call flush() to apply the queued chunks on the current thread
+ */
+public class MemoryFaweQueue extends MappedFaweQueue<LongLinkedHashMap<char[][]>, char[][], char[]> {
+
+    private final LongLinkedHashMap<char[][]> world = new LongLinkedHashMap<>();
+
+    private final LongLinkedHashMap.Factory<char[][]> sectionsFactory = new LongLinkedHashMap.Factory<char[][]>() {
+        @Override
+        public char[][] create(long pair) {
+            return new char[16][];
+        }
+    };
+
+    public MemoryFaweQueue(String world) {
+        super(world);
+    }
+
+    /**
+     * Apply all the queued chunks on this thread
+     */
+    @Override
+    public void flush(int time) {
+        while (next() != null);
+    }
+
+    /**
+     * size() and addNotifyTask use the SetQueue, which needs a running platform
+     */
+    @Override
+    public int size() {
+        return blocks.size();
+    }
+
+    /**
+     * Remove all the chunks from the world and queue
+     */
+    public void reset() {
+        clear();
+        world.clear();
+    }
+
+    @Override
+    public LongLinkedHashMap<char[][]> getImpWorld() {
+        return world;
+    }
+
+    @Override
+    public boolean isChunkLoaded(LongLinkedHashMap<char[][]> world, int x, int z) {
+        return true;
+    }
+
+    @Override
+    public boolean regenerateChunk(LongLinkedHashMap<char[][]> world, int x, int z) {
+        world.remove(MathMan.pairInt(x, z));
+        return true;
+    }
+
+    @Override
+    public boolean loadChunk(LongLinkedHashMap<char[][]> world, int x, int z, boolean generate) {
+        return true;
+    }
+
+    @Override
+    public char[][] getCachedSections(LongLinkedHashMap<char[][]> world, int cx, int cz) {
+        return world.computeIfAbsent(MathMan.pairInt(cx, cz), sectionsFactory);
+    }
+
+    @Override
+    public char[] getCachedSection(char[][] chunk, int cy) {
+        return chunk[cy];
+    }
+
+    @Override
+    public int getCombinedId4Data(char[] section, int x, int y, int z) {
+        return section[FaweCache.CACHE_J[y][x & 15][z & 15]];
+    }
+
+    @Override
+    public int getSkyLight(char[] section, int x, int y, int z) {
+        return 15;
+    }
+
+    @Override
+    public int getEmmittedLight(char[] section, int x, int y, int z) {
+        return 0;
+    }
+
+    @Override
+    public boolean hasSky() {
+        return true;
+    }
+
+    @Override
+    public CompoundTag getTileEntity(int x, int y, int z) {
+        return null;
+    }
+
+    @Override
+    public File getSaveFolder() {
+        return null;
+    }
+
+    @Override
+    public void sendChunk(FaweChunk chunk) {}
+
+    @Override
+    public FaweChunk getFaweChunk(int x, int z) {
+        return new MemoryFaweChunk(this, x, z);
+    }
+
+    @Override
+    public boolean execute(FaweChunk fc) {
+        try {
+            return super.execute(fc);
+        } finally {
+            if (fc instanceof CharFaweChunk) {
+                ((CharFaweChunk) fc).release();
+            }
+        }
+    }
+
+    @Override
+    public boolean setComponents(FaweChunk fc, RunnableVal<FaweChunk> changeTask) {
+        CharFaweChunk chunk = (CharFaweChunk) fc;
+        char[][] sections = getCachedSections(world, fc.getX(), fc.getZ());
+        if (changeTask != null) {
+            CharFaweChunk previous = (CharFaweChunk) getFaweChunk(fc.getX(), fc.getZ());
+            for (int layer = 0; layer < 16; layer++) {
+                char[] current = sections[layer];
+                if (chunk.ids[layer] == null || current == null) {
+                    continue;
+                }
+                // The chunk format uses 1 for air and 0 for unchanged
+                char[] copy = previous.ids[layer] = new char[4096];
+                for (int i = 0; i < current.length; i++) {
+                    char combined = current[i];
+                    copy[i] = combined == 0 ? 1 : combined;
+                }
+            }
+            changeTask.run(previous);
+        }
+        for (int layer = 0; layer < 16; layer++) {
+            char[] ids = chunk.ids[layer];
+            if (ids == null) {
+                continue;
+            }
+            char[] current = sections[layer];
+            if (current == null) {
+                current = sections[layer] = new char[4096];
+            }
+            for (int i = 0; i < ids.length; i++) {
+                char combined = ids[i];
+                switch (combined) {
+                    case 0:
+                        continue;
+                    case 1:
+                        current[i] = 0;
+                        continue;
+                    default:
+                        current[i] = combined;
+                }
+            }
+        }
+        return true;
+    }
+
+    public static class MemoryFaweChunk extends CharFaweChunk<char[][]> {
+        public MemoryFaweChunk(FaweQueue parent, int x, int z) {
+            super(parent, x, z);
+        }
+
+        @Override
+        public char[][] getNewChunk() {
+            MemoryFaweQueue queue = (MemoryFaweQueue) getParent();
+            return queue.getCachedSections(queue.getWorld(), getX(), getZ());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.boydti.fawe.benchmark;
+
+import com.boydti.fawe.FaweCache;
+import com.boydti.fawe.object.clipboard.MemoryOptimizedClipboard;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Set / replace / copy a cube of blocks through a MemoryFaweQueue<br>
+ *  - Each invocation queues the whole region and then applies it
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class QueueBenchmark {
+
+    @Param({"16", "64", "128"})
+    public int size;
+
+    private MemoryFaweQueue queue;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        queue = new MemoryFaweQueue("benchmark");
+        // Start from a world of stone
+        fill(1, 0);
+        queue.flush();
+    }
+
+    private void fill(int id, int data) {
+        for (int y = 0; y < size; y++) {
+            for (int z = 0; z < size; z++) {
+                for (int x = 0; x < size; x++) {
+                    queue.setBlock(x, y, z, id, data);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void set() {
+        fill(3, 0);
+        queue.flush();
+    }
+
+    @Benchmark
+    public void replace() {
+        for (int y = 0; y < size; y++) {
+            for (int z = 0; z < size; z++) {
+                for (int x = 0; x < size; x++) {
+                    int combined = queue.getCombinedId4Data(x, y, z);
+                    if (combined == (1 << 4)) {
+                        queue.setBlock(x, y, z, 3, 0);
+                    } else {
+                        queue.setBlock(x, y, z, 1, 0);
+                    }
+                }
+            }
+        }
+        queue.flush();
+    }
+
+    @Benchmark
+    public MemoryOptimizedClipboard copy() {
+        MemoryOptimizedClipboard clipboard = new MemoryOptimizedClipboard(size, size, size);
+        for (int y = 0; y < size; y++) {
+            for (int z = 0; z < size; z++) {
+                for (int x = 0; x < size; x++) {
+                    clipboard.setBlock(x, y, z, FaweCache.CACHE_BLOCK[queue.getCombinedId4Data(x, y, z)]);
+                }
+            }
+        }
+        return clipboard;
+    }
+}
@@ -9,6 +9,7 @@ import com.boydti.fawe.bukkit.regions.FactionsUUIDFeature;
 import com.boydti.fawe.bukkit.regions.GriefPreventionFeature;
 import com.boydti.fawe.bukkit.regions.PlotMeFeature;
 import com.boydti.fawe.bukkit.regions.PreciousStonesFeature;
+import com.boydti.fawe.bukkit.regions.RegionCommandListener;
 import com.boydti.fawe.bukkit.regions.ResidenceFeature;
 import com.boydti.fawe.bukkit.regions.TownyFeature;
 import com.boydti.fawe.bukkit.regions.Worldguard;
@@ -24,6 +25,7 @@ import com.boydti.fawe.util.MainUtil;
 import com.boydti.fawe.util.ReflectionUtils;
 import com.boydti.fawe.util.StringMan;
 import com.boydti.fawe.util.TaskManager;
+import com.boydti.fawe.util.WEManager;
 import com.sk89q.worldedit.bukkit.WorldEditPlugin;
 import com.sk89q.worldedit.world.World;
 import java.io.File;
@@ -304,6 +306,8 @@ public class FaweBukkit implements IFawe, Listener {
                 MainUtil.handleError(e);
             }
         }
+        // Region masks are cached, so drop them when regions are changed by command
+        Bukkit.getPluginManager().registerEvents(new RegionCommandListener(), plugin);
         return managers;
     }
 
@@ -319,6 +323,7 @@ public class FaweBukkit implements IFawe, Listener {
     public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
         Player player = event.getPlayer();
         FawePlayer fp = FawePlayer.wrap(player);
+        WEManager.IMP.invalidateMask(fp);
     }
 
     @Override
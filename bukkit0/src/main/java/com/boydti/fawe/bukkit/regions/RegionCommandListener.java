@@ -0,0 +1,67 @@
+package com.boydti.fawe.bukkit.regions;
+
+import com.boydti.fawe.util.TaskManager;
+import com.boydti.fawe.util.WEManager;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerCommandPreprocessEvent;
+import org.bukkit.event.server.ServerCommandEvent;
+
+/**
+ * Invalidate the cached region masks when a protection plugin's regions or members are changed by command<br>
+ *  - WorldGuard, PlotSquared and PlotMe don't have events for this
+ */
+public class RegionCommandListener implements Listener {
+
+    private static final Map<String, Set<String>> COMMANDS = new HashMap<>();
+
+    static {
+        register(new String[] { "rg", "region", "regions", "worldguard:rg", "worldguard:region", "worldguard:regions" },
+                "addmember", "addmem", "am", "removemember", "remmember", "removemem", "remmem", "rm", "addowner", "ao", "removeowner", "ro",
+                "remove", "rem", "delete", "del", "define", "def", "d", "redefine", "update", "move", "claim", "setparent", "parent", "flag", "f");
+        register(new String[] { "plot", "plots", "p", "p2", "plotsquared", "plotsquared:plot", "plotme" },
+                "trust", "t", "untrust", "ut", "add", "a", "remove", "r", "deny", "d", "undeny", "ud", "delete", "dispose", "del", "clear", "reset",
+                "unlink", "merge", "m", "setowner", "owner", "claim", "auto", "unclaim");
+    }
+
+    private static void register(String[] aliases, String... subCommands) {
+        Set<String> set = new HashSet<>(Arrays.asList(subCommands));
+        for (String alias : aliases) {
+            COMMANDS.put(alias, set);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerCommand(PlayerCommandPreprocessEvent event) {
+        onCommand(event.getMessage());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onServerCommand(ServerCommandEvent event) {
+        onCommand(event.getCommand());
+    }
+
+    private void onCommand(String command) {
+        String[] split = command.toLowerCase().split(" ");
+        if (split.length < 2) {
+            return;
+        }
+        String label = split[0].startsWith("/") ? split[0].substring(1) : split[0];
+        Set<String> subCommands = COMMANDS.get(label);
+        if (subCommands != null && subCommands.contains(split[1])) {
+            // The command is run after this event
+            TaskManager.IMP.task(new Runnable() {
+                @Override
+                public void run() {
+                    WEManager.IMP.invalidateMasks();
+                }
+            });
+        }
+    }
+}
@@ -2,14 +2,21 @@ package com.boydti.fawe.bukkit.regions;
 
 import com.boydti.fawe.bukkit.FaweBukkit;
 import com.boydti.fawe.object.FawePlayer;
+import com.boydti.fawe.util.WEManager;
 import com.palmergames.bukkit.towny.Towny;
+import com.palmergames.bukkit.towny.event.DeleteTownEvent;
+import com.palmergames.bukkit.towny.event.TownAddResidentEvent;
+import com.palmergames.bukkit.towny.event.TownRemoveResidentEvent;
 import com.palmergames.bukkit.towny.object.PlayerCache;
 import com.palmergames.bukkit.towny.object.TownBlock;
 import com.palmergames.bukkit.towny.object.TownyUniverse;
 import com.palmergames.bukkit.towny.object.WorldCoord;
+import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.plugin.Plugin;
 
@@ -21,6 +28,22 @@ public class TownyFeature extends BukkitMaskManager implements Listener {
         super(townyPlugin.getName());
         this.towny = townyPlugin;
         this.plugin = p3;
+        Bukkit.getPluginManager().registerEvents(this, p3.getPlugin());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onResidentAdded(TownAddResidentEvent event) {
+        WEManager.IMP.invalidateMasks();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onResidentRemoved(TownRemoveResidentEvent event) {
+        WEManager.IMP.invalidateMasks();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onTownDeleted(DeleteTownEvent event) {
+        WEManager.IMP.invalidateMasks();
     }
 
     @Override
@@ -87,6 +87,12 @@ public class BukkitQueue_All extends BukkitQueue_0<Chunk, Chunk, Chunk> {
         return impWorld.getChunkAt(cx, cz);
     }
 
+    @Override
+    public Chunk getCachedSection(Chunk chunk, int cy) {
+        // The chunk is read directly, so it is also every section
+        return chunk;
+    }
+
     @Override
     public CompoundTag getTileEntity(Chunk chunk, int x, int y, int z) {
         return null;
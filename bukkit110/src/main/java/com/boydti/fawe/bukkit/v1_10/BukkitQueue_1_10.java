@@ -35,7 +35,9 @@ import net.minecraft.server.v1_10_R1.Block;
 import net.minecraft.server.v1_10_R1.BlockPosition;
 import net.minecraft.server.v1_10_R1.ChunkSection;
 import net.minecraft.server.v1_10_R1.DataBits;
+import net.minecraft.server.v1_10_R1.DataPalette;
 import net.minecraft.server.v1_10_R1.DataPaletteBlock;
+import net.minecraft.server.v1_10_R1.DataPaletteGlobal;
 import net.minecraft.server.v1_10_R1.Entity;
 import net.minecraft.server.v1_10_R1.EntityPlayer;
 import net.minecraft.server.v1_10_R1.EntityTracker;
@@ -75,8 +77,15 @@ public class BukkitQueue_1_10 extends BukkitQueue_0<Chunk, ChunkSection[], Chunk
 
     private static IBlockData air;
     private static Field fieldBits;
+    private static Field fieldPalette;
+    private static Field fieldSize;
     private static Method getEntitySlices;
 
+    /**
+     * The combined id (+1) of each global palette index, or 0 if not yet known
+     */
+    private static final int[] GLOBAL_IDS = new int[1 << 13];
+
     public static final IBlockData[] IBD_CACHE = new IBlockData[Character.MAX_VALUE];
 
     public BukkitQueue_1_10(final String world) {
@@ -89,6 +98,10 @@ public class BukkitQueue_1_10 extends BukkitQueue_0<Chunk, ChunkSection[], Chunk
                 air = (IBlockData) fieldAir.get(null);
                 fieldBits = DataPaletteBlock.class.getDeclaredField("b");
                 fieldBits.setAccessible(true);
+                fieldPalette = DataPaletteBlock.class.getDeclaredField("c");
+                fieldPalette.setAccessible(true);
+                fieldSize = DataPaletteBlock.class.getDeclaredField("e");
+                fieldSize.setAccessible(true);
                 getEntitySlices = net.minecraft.server.v1_10_R1.Chunk.class.getDeclaredMethod("getEntitySlices");
                 getEntitySlices.setAccessible(true);
                 if (adapter == null) {
@@ -398,6 +411,22 @@ public class BukkitQueue_1_10 extends BukkitQueue_0<Chunk, ChunkSection[], Chunk
         }
     }
 
+    /**
+     * @param ibd
+     * @return the combined id (id << 4 | data) of the block state, or 0 (air) if it is null
+     */
+    private static int getCombined(IBlockData ibd) {
+        if (ibd == null) {
+            return 0;
+        }
+        Block block = ibd.getBlock();
+        int combined = Block.getId(block) << 4;
+        if (FaweCache.hasData(combined >> 4)) {
+            combined += block.toLegacyData(ibd);
+        }
+        return combined;
+    }
+
     @Override
     public CharFaweChunk getPrevious(CharFaweChunk fs, ChunkSection[] sections, Map<?, ?> tilesGeneric, Collection<?>[] entitiesGeneric, Set<UUID> createdEntities, boolean all) throws Exception {
         Map<BlockPosition, TileEntity> tiles = (Map<BlockPosition, TileEntity>) tilesGeneric;
@@ -408,21 +437,22 @@ public class BukkitQueue_1_10 extends BukkitQueue_0<Chunk, ChunkSection[], Chunk
         for (int layer = 0; layer < sections.length; layer++) {
             if (fs.getCount(layer) != 0 || all) {
                 ChunkSection section = sections[layer];
-                if (section != null) {
+                // Empty sections are left as null (i.e. air)
+                if (section != null && !section.a()) {
                     short solid = 0;
                     char[] previousLayer = idPrevious[layer] = new char[4096];
                     DataPaletteBlock blocks = section.getBlocks();
+                    DataBits bits = (DataBits) fieldBits.get(blocks);
+                    DataPalette palette = (DataPalette) fieldPalette.get(blocks);
+                    // The palette is resolved once per entry, rather than once per block
+                    int bitsPerEntry = fieldSize.getInt(blocks);
+                    int[] paletteIds = palette instanceof DataPaletteGlobal && bitsPerEntry <= 13 ? GLOBAL_IDS : new int[1 << bitsPerEntry];
                     for (int j = 0; j < 4096; j++) {
-                        int x = FaweCache.CACHE_X[0][j];
-                        int y = FaweCache.CACHE_Y[0][j];
-                        int z = FaweCache.CACHE_Z[0][j];
-                        IBlockData ibd = blocks.a(x, y, z);
-                        Block block = ibd.getBlock();
-                        int combined = Block.getId(block);
-                        if (FaweCache.hasData(combined)) {
-                            combined = (combined << 4) + block.toLegacyData(ibd);
-                        } else {
-                            combined = combined << 4;
+                        int paletteIndex = bits.a(j);
+                        int combined = paletteIds[paletteIndex] - 1;
+                        if (combined == -1) {
+                            combined = getCombined(palette.a(paletteIndex));
+                            paletteIds[paletteIndex] = combined + 1;
                         }
                         if (combined > 1) {
                             solid++;
@@ -649,6 +679,7 @@ public class BukkitQueue_1_10 extends BukkitQueue_0<Chunk, ChunkSection[], Chunk
                         continue;
                     } else {
                         sections[j] = newChunkSection(j << 4, flag, array);
+                        fs.adoptSection(j);
                     }
                     continue;
                 } else if (count >= 4096) {
@@ -658,6 +689,7 @@ public class BukkitQueue_1_10 extends BukkitQueue_0<Chunk, ChunkSection[], Chunk
                         continue;
                     } else {
                         sections[j] = newChunkSection(j << 4, flag, array);
+                        fs.adoptSection(j);
                     }
                     continue;
                 }
@@ -3,6 +3,7 @@ package com.boydti.fawe.bukkit.v1_7;
 import com.boydti.fawe.FaweCache;
 import com.boydti.fawe.example.CharFaweChunk;
 import com.boydti.fawe.object.FaweQueue;
+import com.boydti.fawe.object.collection.SectionPool;
 import com.boydti.fawe.util.MainUtil;
 import net.minecraft.server.v1_7_R4.NibbleArray;
 import org.bukkit.Bukkit;
@@ -39,7 +40,7 @@ public class BukkitChunk_1_7 extends CharFaweChunk<Chunk> {
         byte[] vs = this.byteIds[i];
         char[] vs2 = this.ids[i];
         if (vs2 == null) {
-            vs2 = this.ids[i] = new char[4096];
+            vs2 = this.ids[i] = SectionPool.borrow();
         }
         if (vs == null) {
             vs = this.byteIds[i] = new byte[4096];
@@ -156,7 +157,7 @@ public class BukkitChunk_1_7 extends CharFaweChunk<Chunk> {
             copy.count = count;
             copy.relight = relight;
         } else {
-            copy.byteIds = (byte[][]) MainUtil.copyNd(byteIds);
+            copy.byteIds = MainUtil.copy(byteIds);
             copy.datas = datas.clone();
             copy.air = air.clone();
             copy.biomes = biomes.clone();
@@ -352,6 +352,7 @@ public class BukkitQueue18R3 extends BukkitQueue_0<Chunk, ChunkSection[], ChunkS
                 ChunkSection section = sections[j];
                 if ((section == null) || (fs.getCount(j) >= 4096)) {
                     section = new ChunkSection(j << 4, flag, newArray);
+                    fs.adoptSection(j);
                     sections[j] = section;
                     continue;
                 }
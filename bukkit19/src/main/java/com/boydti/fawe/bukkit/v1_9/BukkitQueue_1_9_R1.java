@@ -38,6 +38,7 @@ import net.minecraft.server.v1_9_R2.ChunkSection;
 import net.minecraft.server.v1_9_R2.DataBits;
 import net.minecraft.server.v1_9_R2.DataPalette;
 import net.minecraft.server.v1_9_R2.DataPaletteBlock;
+import net.minecraft.server.v1_9_R2.DataPaletteGlobal;
 import net.minecraft.server.v1_9_R2.Entity;
 import net.minecraft.server.v1_9_R2.EntityPlayer;
 import net.minecraft.server.v1_9_R2.EntityTracker;
@@ -77,6 +78,13 @@ public class BukkitQueue_1_9_R1 extends BukkitQueue_0<Chunk, ChunkSection[], Chu
 
     private static IBlockData air;
     private static Field fieldBits;
+    private static Field fieldPalette;
+    private static Field fieldSize;
+
+    /**
+     * The combined id (+1) of each global palette index, or 0 if not yet known
+     */
+    private static final int[] GLOBAL_IDS = new int[1 << 13];
 
     public BukkitQueue_1_9_R1(final String world) {
         super(world);
@@ -88,6 +96,10 @@ public class BukkitQueue_1_9_R1 extends BukkitQueue_0<Chunk, ChunkSection[], Chu
                 air = (IBlockData) fieldAir.get(null);
                 fieldBits = DataPaletteBlock.class.getDeclaredField("b");
                 fieldBits.setAccessible(true);
+                fieldPalette = DataPaletteBlock.class.getDeclaredField("c");
+                fieldPalette.setAccessible(true);
+                fieldSize = DataPaletteBlock.class.getDeclaredField("e");
+                fieldSize.setAccessible(true);
                 if (adapter == null) {
                     setupAdapter(new FaweAdapter_1_9());
                     Fawe.debug("Using adapter: " + adapter);
@@ -343,6 +355,22 @@ public class BukkitQueue_1_9_R1 extends BukkitQueue_0<Chunk, ChunkSection[], Chu
         }
     }
 
+    /**
+     * @param ibd
+     * @return the combined id (id << 4 | data) of the block state, or 0 (air) if it is null
+     */
+    private static int getCombined(IBlockData ibd) {
+        if (ibd == null) {
+            return 0;
+        }
+        Block block = ibd.getBlock();
+        int combined = Block.getId(block) << 4;
+        if (FaweCache.hasData(combined >> 4)) {
+            combined += block.toLegacyData(ibd);
+        }
+        return combined;
+    }
+
     @Override
     public CharFaweChunk getPrevious(CharFaweChunk fs, ChunkSection[] sections, Map<?, ?> tilesGeneric, Collection<?>[] entitiesGeneric, Set<UUID> createdEntities, boolean all) throws Exception {
         Map<BlockPosition, TileEntity> tiles = (Map<BlockPosition, TileEntity>) tilesGeneric;
@@ -353,21 +381,22 @@ public class BukkitQueue_1_9_R1 extends BukkitQueue_0<Chunk, ChunkSection[], Chu
         for (int layer = 0; layer < sections.length; layer++) {
             if (fs.getCount(layer) != 0 || all) {
                 ChunkSection section = sections[layer];
-                if (section != null) {
+                // Empty sections are left as null (i.e. air)
+                if (section != null && !section.a()) {
                     short solid = 0;
                     char[] previousLayer = idPrevious[layer] = new char[4096];
                     DataPaletteBlock blocks = section.getBlocks();
+                    DataBits bits = (DataBits) fieldBits.get(blocks);
+                    DataPalette palette = (DataPalette) fieldPalette.get(blocks);
+                    // The palette is resolved once per entry, rather than once per block
+                    int bitsPerEntry = fieldSize.getInt(blocks);
+                    int[] paletteIds = palette instanceof DataPaletteGlobal && bitsPerEntry <= 13 ? GLOBAL_IDS : new int[1 << bitsPerEntry];
                     for (int j = 0; j < 4096; j++) {
-                        int x = FaweCache.CACHE_X[0][j];
-                        int y = FaweCache.CACHE_Y[0][j];
-                        int z = FaweCache.CACHE_Z[0][j];
-                        IBlockData ibd = blocks.a(x, y, z);
-                        Block block = ibd.getBlock();
-                        int combined = Block.getId(block);
-                        if (FaweCache.hasData(combined)) {
-                            combined = (combined << 4) + block.toLegacyData(ibd);
-                        } else {
-                            combined = combined << 4;
+                        int paletteIndex = bits.a(j);
+                        int combined = paletteIds[paletteIndex] - 1;
+                        if (combined == -1) {
+                            combined = getCombined(palette.a(paletteIndex));
+                            paletteIds[paletteIndex] = combined + 1;
                         }
                         if (combined > 1) {
                             solid++;
@@ -595,6 +624,7 @@ public class BukkitQueue_1_9_R1 extends BukkitQueue_0<Chunk, ChunkSection[], Chu
                         continue;
                     } else {
                         sections[j] = newChunkSection(j << 4, flag, array);
+                        fs.adoptSection(j);
                     }
                     continue;
                 } else if (count >= 4096) {
@@ -604,6 +634,7 @@ public class BukkitQueue_1_9_R1 extends BukkitQueue_0<Chunk, ChunkSection[], Chu
                         continue;
                     } else {
                         sections[j] = newChunkSection(j << 4, flag, array);
+                        fs.adoptSection(j);
                     }
                     continue;
                 }
@@ -199,6 +199,7 @@ public class Fawe {
                     WEManager.IMP.managers.add(new PlotSquaredFeature());
                     Fawe.debug("Plugin 'PlotSquared' found. Using it now.");
                 } catch (Throwable e) {}
+                WEManager.IMP.invalidateMasks();
                 Fawe.this.worldedit = WorldEdit.getInstance();
                 // Events
                 Fawe.this.setupEvents();
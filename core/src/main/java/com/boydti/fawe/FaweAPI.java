@@ -208,6 +208,7 @@ public class FaweAPI {
 
     public static void addMaskManager(FaweMaskManager maskMan) {
         WEManager.IMP.managers.add(maskMan);
+        WEManager.IMP.invalidateMasks();
     }
 
     /**
@@ -16,6 +16,7 @@ import com.sk89q.jnbt.StringTag;
 import com.sk89q.jnbt.Tag;
 import com.sk89q.worldedit.CuboidClipboard;
 import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockType;
 import com.sk89q.worldedit.world.registry.BundledBlockData;
 import java.awt.Color;
 import java.lang.reflect.Field;
@@ -378,6 +379,121 @@ public class FaweCache {
         }
     }
 
+    private static boolean[] TERRAIN_SOLID;
+    private static boolean[] TERRAIN_NATURAL;
+
+    /**
+     * Check if an id is terrain (i.e. where EditSession.getHighestTerrainBlock stops)
+     * @param id
+     * @param naturalOnly if only blocks which occur naturally count, otherwise any solid block
+     * @return
+     */
+    public static boolean isTerrain(int id, boolean naturalOnly) {
+        boolean[] terrain = naturalOnly ? TERRAIN_NATURAL : TERRAIN_SOLID;
+        if (terrain == null) {
+            terrain = new boolean[4096];
+            for (int i = 0; i < terrain.length; i++) {
+                terrain[i] = isTerrain0(i, naturalOnly);
+            }
+            if (naturalOnly) {
+                TERRAIN_NATURAL = terrain;
+            } else {
+                TERRAIN_SOLID = terrain;
+            }
+        }
+        return id >= 0 && id < terrain.length && terrain[id];
+    }
+
+    private static boolean isTerrain0(int id, boolean naturalOnly) {
+        switch (id) {
+            case 0:
+                return false;
+            case 2:
+            case 4:
+            case 13:
+            case 14:
+            case 15:
+            case 20:
+            case 21:
+            case 22:
+            case 25:
+            case 30:
+            case 32:
+            case 37:
+            case 39:
+            case 40:
+            case 41:
+            case 42:
+            case 45:
+            case 46:
+            case 47:
+            case 48:
+            case 49:
+            case 51:
+            case 52:
+            case 54:
+            case 55:
+            case 56:
+            case 57:
+            case 58:
+            case 60:
+            case 61:
+            case 62:
+            case 7:
+            case 8:
+            case 9:
+            case 10:
+            case 11:
+            case 73:
+            case 74:
+            case 78:
+            case 79:
+            case 80:
+            case 81:
+            case 82:
+            case 83:
+            case 84:
+            case 85:
+            case 87:
+            case 88:
+            case 101:
+            case 102:
+            case 103:
+            case 110:
+            case 112:
+            case 113:
+            case 117:
+            case 121:
+            case 122:
+            case 123:
+            case 124:
+            case 129:
+            case 133:
+            case 138:
+            case 137:
+            case 140:
+            case 165:
+            case 166:
+            case 169:
+            case 170:
+            case 172:
+            case 173:
+            case 174:
+            case 176:
+            case 177:
+            case 181:
+            case 182:
+            case 188:
+            case 189:
+            case 190:
+            case 191:
+            case 192:
+                return true;
+            default:
+                return naturalOnly ? BlockType.isNaturalTerrainBlock(id, 0) : !BlockType.canPassThrough(id, 0);
+        }
+    }
+
     /**
      * Check if an id might have data
      * @param id
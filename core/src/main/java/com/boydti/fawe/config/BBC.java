@@ -130,7 +130,7 @@ public enum BBC {
 
     COMMAND_INVALID_SYNTAX("The command was not used properly (no more help available).", "WorldEdit.Command"),
 
-    PROGRESS_MESSAGE("[ Queue: %s0 | Dispatched: %s1 ]", "Progress"),
+    PROGRESS_MESSAGE("[ Queue: %s0 | Dispatched: %s1 | Optimized: %s2ms ]", "Progress"),
     PROGRESS_DONE   ("[ Took: %s0s ]", "Progress"),
 
     COMMAND_SYNTAX("&cUsage: &7%s0", "Error"),
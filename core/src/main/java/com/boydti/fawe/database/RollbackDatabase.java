@@ -31,11 +31,34 @@ public class RollbackDatabase {
 
     private String INSERT_EDIT;
     private String CREATE_TABLE;
+    private String CREATE_INDEX_TIME;
+    private String ADD_RID;
+    private String CREATE_INDEX_RID;
+    private String FILL_RID;
+    private String MAX_RID;
+    private String CLEAR_SPATIAL_INDEX;
+    private String CREATE_SPATIAL_INDEX;
+    private String COUNT_SPATIAL_INDEX;
+    private String FILL_SPATIAL_INDEX;
+    private String INSERT_SPATIAL_INDEX;
 //    private String GET_EDITS_POINT;
     private String GET_EDITS;
     private String GET_EDITS_USER;
     private String DELETE_EDITS_USER;
+    private String DELETE_SPATIAL_USER;
     private String PURGE;
+    private String PURGE_SPATIAL;
+
+    /**
+     * If the edit bounds are indexed in an R*Tree (the sqlite driver may be compiled without it)
+     */
+    private boolean spatial;
+    /**
+     * The next `rid`, a stable key for each edit (the implicit rowid may change, e.g. on VACUUM) used by the R*Tree
+     */
+    private long nextRid = 1;
+
+    private static final int BATCH_SIZE = 4096;
 
     private ConcurrentLinkedQueue<RollbackOptimizedHistory> historyChanges = new ConcurrentLinkedQueue<>();
     private ConcurrentLinkedQueue<Runnable> notify = new ConcurrentLinkedQueue<>();
@@ -45,14 +68,34 @@ public class RollbackDatabase {
         this.world = world;
         this.dbLocation = MainUtil.getFile(Fawe.imp().getDirectory(), Settings.PATHS.HISTORY + File.separator + world + File.separator + "summary.db");
         connection = openConnection();
-        CREATE_TABLE = "CREATE TABLE IF NOT EXISTS `" + prefix + "edits` (`player` BLOB(16) NOT NULL,`id` INT NOT NULL,`x1` INT NOT NULL,`y1` INT NOT NULL,`z1` INT NOT NULL,`x2` INT NOT NULL,`y2` INT NOT NULL,`z2` INT NOT NULL,`time` INT NOT NULL, PRIMARY KEY (player, id))";
-        INSERT_EDIT = "INSERT INTO `" + prefix + "edits` (`player`,`id`,`x1`,`y1`,`z1`,`x2`,`y2`,`z2`,`time`) VALUES(?,?,?,?,?,?,?,?,?)";
+        CREATE_TABLE = "CREATE TABLE IF NOT EXISTS `" + prefix + "edits` (`player` BLOB(16) NOT NULL,`id` INT NOT NULL,`x1` INT NOT NULL,`y1` INT NOT NULL,`z1` INT NOT NULL,`x2` INT NOT NULL,`y2` INT NOT NULL,`z2` INT NOT NULL,`time` INT NOT NULL,`rid` INTEGER, PRIMARY KEY (player, id))";
+        ADD_RID = "ALTER TABLE `" + prefix + "edits` ADD COLUMN `rid` INTEGER";
+        CREATE_INDEX_RID = "CREATE UNIQUE INDEX IF NOT EXISTS `" + prefix + "edits_rid` ON `" + prefix + "edits` (`rid`)";
+        FILL_RID = "UPDATE `" + prefix + "edits` SET `rid`=`rowid` WHERE `rid` IS NULL";
+        MAX_RID = "SELECT MAX(`rid`) FROM `" + prefix + "edits`";
+        INSERT_EDIT = "INSERT INTO `" + prefix + "edits` (`player`,`id`,`x1`,`y1`,`z1`,`x2`,`y2`,`z2`,`time`,`rid`) VALUES(?,?,?,?,?,?,?,?,?,?)";
+        CREATE_INDEX_TIME = "CREATE INDEX IF NOT EXISTS `" + prefix + "edits_time` ON `" + prefix + "edits` (`time`)";
+        CREATE_SPATIAL_INDEX = "CREATE VIRTUAL TABLE IF NOT EXISTS `" + prefix + "edits_index` USING rtree(`id`,`x1`,`x2`,`y1`,`y2`,`z1`,`z2`)";
+        COUNT_SPATIAL_INDEX = "SELECT COUNT(*) FROM `" + prefix + "edits_index`";
+        CLEAR_SPATIAL_INDEX = "DELETE FROM `" + prefix + "edits_index`";
+        FILL_SPATIAL_INDEX = "INSERT INTO `" + prefix + "edits_index` (`id`,`x1`,`x2`,`y1`,`y2`,`z1`,`z2`) SELECT `rid`,`x1`,`x2`,`y1`,`y2`,`z1`,`z2` FROM `" + prefix + "edits`";
+        INSERT_SPATIAL_INDEX = "INSERT INTO `" + prefix + "edits_index` (`id`,`x1`,`x2`,`y1`,`y2`,`z1`,`z2`) VALUES(?,?,?,?,?,?,?)";
         PURGE = "DELETE FROM `" + prefix + "edits` WHERE `time`<?";
-//        GET_EDITS_POINT = "SELECT `player`,`id` FROM `" + prefix + "edits` WHERE `x2`>=? AND `x1`<=? AND `y2`>=? AND `y1`<=? AND `z2`>=? AND `z1`<=?";
-        GET_EDITS = "SELECT `player`,`id` FROM `" + prefix + "edits` WHERE `x2`>=? AND `x1`<=? AND `y2`>=? AND `y1`<=? AND `z2`>=? AND `z1`<=? AND `time`>? ORDER BY `time` DESC, `id` DESC";
-        GET_EDITS_USER = "SELECT `player`,`id` FROM `" + prefix + "edits` WHERE `x2`>=? AND `x1`<=? AND `y2`>=? AND `y1`<=? AND `z2`>=? AND `z1`<=? AND `time`>? AND `player`=? ORDER BY `time` DESC, `id` DESC";
-        DELETE_EDITS_USER = "DELETE FROM `" + prefix + "edits` WHERE `x2`>=? AND `x1`<=? AND `y2`>=? AND `y1`<=? AND `z2`>=? AND `z1`<=? AND `time`>? AND `player`=?";
+        PURGE_SPATIAL = "DELETE FROM `" + prefix + "edits_index` WHERE `id` IN (SELECT `rid` FROM `" + prefix + "edits` WHERE `time`<?)";
         init();
+        String bounds = "`x2`>=? AND `x1`<=? AND `y2`>=? AND `y1`<=? AND `z2`>=? AND `z1`<=?";
+//        GET_EDITS_POINT = "SELECT `player`,`id` FROM `" + prefix + "edits` WHERE " + bounds;
+        if (spatial) {
+            // The R*Tree stores 32 bit floats (rounded outwards), so the exact bounds are checked again on the edits table
+            String from = "FROM `" + prefix + "edits_index` AS `r` JOIN `" + prefix + "edits` AS `e` ON `e`.`rid`=`r`.`id` WHERE `r`.`x2`>=? AND `r`.`x1`<=? AND `r`.`y2`>=? AND `r`.`y1`<=? AND `r`.`z2`>=? AND `r`.`z1`<=? AND `e`.`x2`>=? AND `e`.`x1`<=? AND `e`.`y2`>=? AND `e`.`y1`<=? AND `e`.`z2`>=? AND `e`.`z1`<=? AND `e`.`time`>?";
+            GET_EDITS = "SELECT `e`.`player`,`e`.`id` " + from + " ORDER BY `e`.`time` DESC, `e`.`id` DESC";
+            GET_EDITS_USER = "SELECT `e`.`player`,`e`.`id` " + from + " AND `e`.`player`=? ORDER BY `e`.`time` DESC, `e`.`id` DESC";
+            DELETE_SPATIAL_USER = "DELETE FROM `" + prefix + "edits_index` WHERE `id` IN (SELECT `e`.`rid` " + from + " AND `e`.`player`=?)";
+        } else {
+            GET_EDITS = "SELECT `player`,`id` FROM `" + prefix + "edits` WHERE " + bounds + " AND `time`>? ORDER BY `time` DESC, `id` DESC";
+            GET_EDITS_USER = "SELECT `player`,`id` FROM `" + prefix + "edits` WHERE " + bounds + " AND `time`>? AND `player`=? ORDER BY `time` DESC, `id` DESC";
+        }
+        DELETE_EDITS_USER = "DELETE FROM `" + prefix + "edits` WHERE " + bounds + " AND `time`>? AND `player`=?";
         purge((int) TimeUnit.DAYS.toMillis(Settings.HISTORY.DELETE_AFTER_DAYS));
         TaskManager.IMP.async(new Runnable() {
             @Override
@@ -84,6 +127,68 @@ public class RollbackDatabase {
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        try (PreparedStatement stmt = connection.prepareStatement(CREATE_INDEX_TIME)) {
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        // Add the `rid` column to tables created before it existed
+        boolean hasRid = false;
+        try (PreparedStatement stmt = connection.prepareStatement("PRAGMA table_info(`" + prefix + "edits`)"); ResultSet result = stmt.executeQuery()) {
+            while (result.next()) {
+                if ("rid".equals(result.getString("name"))) {
+                    hasRid = true;
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        if (!hasRid) {
+            try (PreparedStatement stmt = connection.prepareStatement(ADD_RID)) {
+                stmt.executeUpdate();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+        int filled = 0;
+        try (PreparedStatement stmt = connection.prepareStatement(FILL_RID)) {
+            filled = stmt.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        try (PreparedStatement stmt = connection.prepareStatement(CREATE_INDEX_RID)) {
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        try (PreparedStatement stmt = connection.prepareStatement(MAX_RID); ResultSet result = stmt.executeQuery()) {
+            if (result.next()) {
+                nextRid = result.getLong(1) + 1;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        try (PreparedStatement stmt = connection.prepareStatement(CREATE_SPATIAL_INDEX)) {
+            stmt.executeUpdate();
+            spatial = true;
+        } catch (SQLException e) {
+            Fawe.debug("&cSQLite R*Tree is not available, rollback lookups will not be indexed");
+            spatial = false;
+            return;
+        }
+        // Index any edits logged before the R*Tree existed, or which were indexed by rowid
+        try (PreparedStatement count = connection.prepareStatement(COUNT_SPATIAL_INDEX); ResultSet result = count.executeQuery()) {
+            if (filled > 0 || (result.next() && result.getInt(1) == 0)) {
+                try (PreparedStatement stmt = connection.prepareStatement(CLEAR_SPATIAL_INDEX)) {
+                    stmt.executeUpdate();
+                }
+                try (PreparedStatement stmt = connection.prepareStatement(FILL_SPATIAL_INDEX)) {
+                    stmt.executeUpdate();
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
     }
 
     public void addFinishTask(Runnable run) {
@@ -96,9 +201,17 @@ public class RollbackDatabase {
         addTask(new Runnable() {
             @Override
             public void run() {
-                try (PreparedStatement stmt = connection.prepareStatement(PURGE)) {
-                    stmt.setInt(1, then);
-                    stmt.executeUpdate();
+                try {
+                    if (spatial) {
+                        try (PreparedStatement stmt = connection.prepareStatement(PURGE_SPATIAL)) {
+                            stmt.setInt(1, then);
+                            stmt.executeUpdate();
+                        }
+                    }
+                    try (PreparedStatement stmt = connection.prepareStatement(PURGE)) {
+                        stmt.setInt(1, then);
+                        stmt.executeUpdate();
+                    }
                 } catch (SQLException e) {
                     e.printStackTrace();
                 }
@@ -112,16 +225,13 @@ public class RollbackDatabase {
             @Override
             public void run() {
                 try (PreparedStatement stmt = connection.prepareStatement(uuid == null ? GET_EDITS : GET_EDITS_USER)) {
-                    stmt.setInt(1, pos1.getBlockX());
-                    stmt.setInt(2, pos2.getBlockX());
-                    stmt.setByte(3, (byte) (pos1.getBlockY() - 128));
-                    stmt.setByte(4, (byte) (pos2.getBlockY() - 128));
-                    stmt.setInt(5, pos1.getBlockZ());
-                    stmt.setInt(6, pos2.getBlockZ());
-                    stmt.setInt(7, (int) (minTime / 1000));
+                    int i = setBounds(stmt, 1, pos1, pos2);
+                    if (spatial) {
+                        i = setBounds(stmt, i, pos1, pos2);
+                    }
+                    stmt.setInt(i++, (int) (minTime / 1000));
                     if (uuid != null) {
-                        byte[] uuidBytes = ByteBuffer.allocate(16).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).array();
-                        stmt.setBytes(8, uuidBytes);
+                        stmt.setBytes(i, toBytes(uuid));
                     }
                     ResultSet result = stmt.executeQuery();
                     if (!result.next()) {
@@ -144,16 +254,21 @@ public class RollbackDatabase {
                     e.printStackTrace();
                 }
                 if (delete && uuid != null) {
-                    try (PreparedStatement stmt = connection.prepareStatement(DELETE_EDITS_USER)) {
-                        stmt.setInt(1, pos1.getBlockX());
-                        stmt.setInt(2, pos2.getBlockX());
-                        stmt.setByte(3, (byte) (pos1.getBlockY() - 128));
-                        stmt.setByte(4, (byte) (pos2.getBlockY() - 128));
-                        stmt.setInt(5, pos1.getBlockZ());
-                        stmt.setInt(6, pos2.getBlockZ());
-                        stmt.setInt(7, (int) (minTime / 1000));
-                        byte[] uuidBytes = ByteBuffer.allocate(16).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).array();
-                        stmt.setBytes(8, uuidBytes);
+                    try {
+                        if (spatial) {
+                            try (PreparedStatement stmt = connection.prepareStatement(DELETE_SPATIAL_USER)) {
+                                int i = setBounds(stmt, setBounds(stmt, 1, pos1, pos2), pos1, pos2);
+                                stmt.setInt(i++, (int) (minTime / 1000));
+                                stmt.setBytes(i, toBytes(uuid));
+                                stmt.executeUpdate();
+                            }
+                        }
+                        try (PreparedStatement stmt = connection.prepareStatement(DELETE_EDITS_USER)) {
+                            int i = setBounds(stmt, 1, pos1, pos2);
+                            stmt.setInt(i++, (int) (minTime / 1000));
+                            stmt.setBytes(i, toBytes(uuid));
+                            stmt.executeUpdate();
+                        }
                     } catch (SQLException e) {
                         e.printStackTrace();
                     }
@@ -162,6 +277,24 @@ public class RollbackDatabase {
         });
     }
 
+    /**
+     * Set the `x2`>=? AND `x1`<=? ... parameters for a bounding box
+     * @return the next parameter index
+     */
+    private int setBounds(PreparedStatement stmt, int i, Vector pos1, Vector pos2) throws SQLException {
+        stmt.setInt(i++, pos1.getBlockX());
+        stmt.setInt(i++, pos2.getBlockX());
+        stmt.setByte(i++, (byte) (pos1.getBlockY() - 128));
+        stmt.setByte(i++, (byte) (pos2.getBlockY() - 128));
+        stmt.setInt(i++, pos1.getBlockZ());
+        stmt.setInt(i++, pos2.getBlockZ());
+        return i;
+    }
+
+    private byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).array();
+    }
+
     public void logEdit(RollbackOptimizedHistory history) {
         historyChanges.add(history);
     }
@@ -201,25 +334,47 @@ public class RollbackDatabase {
                 copy[i] = historyChanges.poll();
             }
 
-            try (PreparedStatement stmt = connection.prepareStatement(INSERT_EDIT)) {
-                for (RollbackOptimizedHistory change : copy) {
-                    // `player`,`id`,`x1`,`y1`,`z1`,`x2`,`y2`,`z2`,`time`
-                    UUID uuid = change.getUUID();
-                    byte[] uuidBytes = ByteBuffer.allocate(16).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).array();
-                    stmt.setBytes(1, uuidBytes);
-                    stmt.setInt(2, change.getIndex());
-                    stmt.setInt(3, change.getMinX());
-                    stmt.setByte(4, (byte) (change.getMinY() - 128));
-                    stmt.setInt(5, change.getMinZ());
-                    stmt.setInt(6, change.getMaxX());
-                    stmt.setByte(7, (byte) (change.getMaxY() - 128));
-                    stmt.setInt(8, change.getMaxZ());
-                    stmt.setInt(9, (int) (change.getTime() / 1000));
-                    stmt.executeUpdate();
-                    stmt.clearParameters();
+            try (PreparedStatement stmt = connection.prepareStatement(INSERT_EDIT); PreparedStatement index = spatial ? connection.prepareStatement(INSERT_SPATIAL_INDEX) : null) {
+                try {
+                    int batched = 0;
+                    for (RollbackOptimizedHistory change : copy) {
+                        addEdit(stmt, index, change);
+                        if (++batched % BATCH_SIZE == 0) {
+                            stmt.executeBatch();
+                            if (index != null) {
+                                index.executeBatch();
+                            }
+                        }
+                    }
+                    stmt.executeBatch();
+                    if (index != null) {
+                        index.executeBatch();
+                    }
+                } catch (SQLException e) {
+                    // Don't commit edits without their index rows, instead retry each edit on its own (e.g. so one duplicate doesn't lose the batch)
+                    connection.rollback();
+                    stmt.clearBatch();
+                    if (index != null) {
+                        index.clearBatch();
+                    }
+                    for (RollbackOptimizedHistory change : copy) {
+                        try {
+                            addEdit(stmt, index, change);
+                            stmt.executeBatch();
+                            if (index != null) {
+                                index.executeBatch();
+                            }
+                            connection.commit();
+                        } catch (SQLException e2) {
+                            connection.rollback();
+                            stmt.clearBatch();
+                            if (index != null) {
+                                index.clearBatch();
+                            }
+                            Fawe.debug("&cFailed to log edit " + change.getUUID() + "-" + change.getIndex() + ": " + e2.getMessage());
+                        }
+                    }
                 }
-            } catch (Exception e) {
-                e.printStackTrace();
             }
             commit();
             return true;
@@ -229,6 +384,38 @@ public class RollbackDatabase {
         return false;
     }
 
+    /**
+     * Add an edit (and its index row) to the batches
+     */
+    private void addEdit(PreparedStatement stmt, PreparedStatement index, RollbackOptimizedHistory change) throws SQLException {
+        long rid = nextRid++;
+        byte minY = (byte) (change.getMinY() - 128);
+        byte maxY = (byte) (change.getMaxY() - 128);
+        // `player`,`id`,`x1`,`y1`,`z1`,`x2`,`y2`,`z2`,`time`,`rid`
+        stmt.setBytes(1, toBytes(change.getUUID()));
+        stmt.setInt(2, change.getIndex());
+        stmt.setInt(3, change.getMinX());
+        stmt.setByte(4, minY);
+        stmt.setInt(5, change.getMinZ());
+        stmt.setInt(6, change.getMaxX());
+        stmt.setByte(7, maxY);
+        stmt.setInt(8, change.getMaxZ());
+        stmt.setInt(9, (int) (change.getTime() / 1000));
+        stmt.setLong(10, rid);
+        stmt.addBatch();
+        if (index != null) {
+            // `id`,`x1`,`x2`,`y1`,`y2`,`z1`,`z2`
+            index.setLong(1, rid);
+            index.setInt(2, change.getMinX());
+            index.setInt(3, change.getMaxX());
+            index.setInt(4, minY);
+            index.setInt(5, maxY);
+            index.setInt(6, change.getMinZ());
+            index.setInt(7, change.getMaxZ());
+            index.addBatch();
+        }
+    }
+
     public void commit() {
         try {
             if (connection == null) {
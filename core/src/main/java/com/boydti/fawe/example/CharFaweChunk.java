@@ -4,7 +4,7 @@ import com.boydti.fawe.FaweCache;
 import com.boydti.fawe.object.BytePair;
 import com.boydti.fawe.object.FaweChunk;
 import com.boydti.fawe.object.FaweQueue;
-import com.boydti.fawe.util.MainUtil;
+import com.boydti.fawe.object.collection.SectionPool;
 import com.boydti.fawe.util.MathMan;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.worldedit.world.biome.BaseBiome;
@@ -14,6 +14,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public abstract class CharFaweChunk<T> extends FaweChunk<T> {
 
@@ -23,6 +24,8 @@ public abstract class CharFaweChunk<T> extends FaweChunk<T> {
     public short[] relight;
     public int[][] biomes;
     private int bitMask = -1;
+    private int adopted = 0;
+    private final AtomicInteger references = new AtomicInteger(1);
 
     public T chunk;
 
@@ -214,7 +217,7 @@ public abstract class CharFaweChunk<T> extends FaweChunk<T> {
         final int j = FaweCache.CACHE_J[y][x][z];
         char[] vs = this.ids[i];
         if (vs == null) {
-            vs = this.ids[i] = new char[4096];
+            vs = this.ids[i] = SectionPool.borrow();
             this.count[i]++;
         } else if (vs[j] == 0) {
             this.count[i]++;
@@ -253,7 +256,7 @@ public abstract class CharFaweChunk<T> extends FaweChunk<T> {
         final int j = FaweCache.CACHE_J[y][x][z];
         char[] vs = this.ids[i];
         if (vs == null) {
-            vs = this.ids[i] = new char[4096];
+            vs = this.ids[i] = SectionPool.borrow();
             this.count[i]++;
         } else if (vs[j] == 0) {
             this.count[i]++;
@@ -358,6 +361,60 @@ public abstract class CharFaweChunk<T> extends FaweChunk<T> {
         index[z] = biome.getId();
     }
 
+    /**
+     * Mark a section array as now belonging to the world (so it won't be recycled)
+     * @param layer
+     */
+    public void adoptSection(int layer) {
+        this.adopted |= 1 << layer;
+    }
+
+    /**
+     * Add a reference to this chunk's section arrays<br>
+     *  - Anything keeping the chunk after it has been dispatched (e.g. a change task) should call this, and release() when done
+     */
+    public void retain() {
+        this.references.incrementAndGet();
+    }
+
+    /**
+     * Add a reference to this chunk's section arrays, unless they have already been recycled
+     * @return false if the arrays have been recycled
+     */
+    public boolean tryRetain() {
+        int count;
+        do {
+            count = this.references.get();
+            if (count <= 0) {
+                return false;
+            }
+        } while (!this.references.compareAndSet(count, count + 1));
+        return true;
+    }
+
+    /**
+     * Remove a reference to this chunk's section arrays<br>
+     *  - The arrays are returned to the SectionPool once there are no references
+     */
+    public void release() {
+        if (this.references.decrementAndGet() == 0) {
+            recycle();
+        }
+    }
+
+    private void recycle() {
+        getBitMask();
+        for (int i = 0; i < ids.length; i++) {
+            char[] array = ids[i];
+            if (array != null) {
+                ids[i] = null;
+                if ((adopted & (1 << i)) == 0) {
+                    SectionPool.release(array);
+                }
+            }
+        }
+    }
+
     @Override
     public CharFaweChunk<T> copy(boolean shallow) {
         CharFaweChunk<T> copy = (CharFaweChunk<T>) getParent().getFaweChunk(getX(), getZ());
@@ -368,10 +425,27 @@ public abstract class CharFaweChunk<T> extends FaweChunk<T> {
             copy.chunk = chunk;
             copy.count = count;
             copy.relight = relight;
+            // Arrays are shared, so neither chunk can recycle them
+            copy.adopted = -1;
+            this.adopted = -1;
         } else {
-            copy.ids = (char[][]) MainUtil.copyNd(ids);
+            copy.ids = new char[ids.length][];
+            for (int i = 0; i < ids.length; i++) {
+                char[] array = ids[i];
+                if (array != null) {
+                    copy.ids[i] = SectionPool.copy(array);
+                }
+            }
             copy.air = air.clone();
-            copy.biomes = biomes.clone();
+            if (biomes != null) {
+                copy.biomes = new int[biomes.length][];
+                for (int i = 0; i < biomes.length; i++) {
+                    int[] array = biomes[i];
+                    if (array != null) {
+                        copy.biomes[i] = array.clone();
+                    }
+                }
+            }
             copy.chunk = chunk;
             copy.count = count.clone();
             copy.relight = relight.clone();
@@ -7,66 +7,135 @@ import com.boydti.fawe.object.FaweChunk;
 import com.boydti.fawe.object.FaweQueue;
 import com.boydti.fawe.object.IntegerPair;
 import com.boydti.fawe.object.RunnableVal;
+import com.boydti.fawe.object.collection.LongLinkedHashMap;
 import com.boydti.fawe.object.exception.FaweException;
 import com.boydti.fawe.util.MainUtil;
 import com.boydti.fawe.util.MathMan;
 import com.boydti.fawe.util.SetQueue;
 import com.boydti.fawe.util.TaskManager;
 import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.worldedit.Vector2D;
 import com.sk89q.worldedit.blocks.BlockMaterial;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.world.biome.BaseBiome;
 import com.sk89q.worldedit.world.registry.BundledBlockData;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public abstract class MappedFaweQueue<WORLD, CHUNK, SECTION> extends FaweQueue {
 
     private WORLD impWorld;
 
     /**
-     * Map of chunks in the queue
+     * Map of chunks in the queue (in the order they were added)
      */
-    public ConcurrentHashMap<Long, FaweChunk> blocks = new ConcurrentHashMap<>();
-    public ConcurrentLinkedDeque<FaweChunk> chunks = new ConcurrentLinkedDeque<FaweChunk>() {
+    public final LongLinkedHashMap<FaweChunk> blocks = new LongLinkedHashMap<>();
+    private final LongLinkedHashMap.Factory<FaweChunk> chunkFactory = new LongLinkedHashMap.Factory<FaweChunk>() {
         @Override
-        public boolean add(FaweChunk o) {
-            if (getProgressTask() != null) {
-                getProgressTask().run(ProgressType.QUEUE, size() + 1);
-            }
-            return super.add(o);
+        public FaweChunk create(long pair) {
+            return getFaweChunk(MathMan.unpairIntX(pair), MathMan.unpairIntY(pair));
         }
     };
     public ArrayDeque<Runnable> tasks = new ArrayDeque<>();
 
     @Override
     public Collection<FaweChunk> getFaweChunks() {
-        return Collections.unmodifiableCollection(chunks);
+        return Collections.unmodifiableCollection(blocks.values());
+    }
+
+    /**
+     * Shared pool for optimizing chunks before they are dispatched
+     */
+    private static ForkJoinPool optimizePool;
+
+    private static synchronized ForkJoinPool getOptimizePool() {
+        int threads = Math.max(1, Settings.QUEUE.PARALLEL_THREADS);
+        if (optimizePool == null || optimizePool.getParallelism() != threads) {
+            if (optimizePool != null) {
+                optimizePool.shutdown();
+            }
+            optimizePool = new ForkJoinPool(threads);
+        }
+        return optimizePool;
     }
 
+    /**
+     * Set to false to stop the optimization currently in progress (e.g. if the queue is cleared)
+     */
+    private volatile AtomicBoolean optimizing;
+
     @Override
     public void optimize() {
-        ArrayList<Thread> threads = new ArrayList<Thread>();
-        for (final FaweChunk chunk : chunks) {
-            Thread thread = new Thread(new Runnable() {
-                @Override
-                public void run() {
-                    chunk.optimize();
-                }
-            });
-            threads.add(thread);
-            thread.start();
+        List<FaweChunk> values = blocks.values();
+        final FaweChunk[] array = values.toArray(new FaweChunk[values.size()]);
+        if (array.length == 0) {
+            return;
         }
-        for (Thread thread : threads) {
-            try {
-                thread.join();
-            } catch (InterruptedException e) {
-                MainUtil.handleError(e);
+        long start = System.currentTimeMillis();
+        AtomicBoolean running = optimizing = new AtomicBoolean(true);
+        try {
+            OptimizeTask task = new OptimizeTask(array, 0, array.length, running);
+            if (Settings.QUEUE.PARALLEL_THREADS <= 1 || array.length <= OptimizeTask.THRESHOLD) {
+                task.compute();
+            } else {
+                getOptimizePool().invoke(task);
+            }
+        } catch (Throwable e) {
+            MainUtil.handleError(e);
+        } finally {
+            optimizing = null;
+        }
+        if (getProgressTask() != null) {
+            getProgressTask().run(ProgressType.OPTIMIZE, (int) (System.currentTimeMillis() - start));
+        }
+    }
+
+    /**
+     * Optimizes a range of chunks, splitting it in half until it is small enough to do on one thread
+     */
+    private static class OptimizeTask extends RecursiveAction {
+        private static final int THRESHOLD = 16;
+
+        private final FaweChunk[] chunks;
+        private final int start;
+        private final int end;
+        private final AtomicBoolean running;
+
+        private OptimizeTask(FaweChunk[] chunks, int start, int end, AtomicBoolean running) {
+            this.chunks = chunks;
+            this.start = start;
+            this.end = end;
+            this.running = running;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= THRESHOLD) {
+                for (int i = start; i < end && running.get(); i++) {
+                    try {
+                        chunks[i].optimize();
+                    } catch (Throwable e) {
+                        MainUtil.handleError(e);
+                    }
+                }
+                return;
             }
+            int mid = (start + end) >>> 1;
+            invokeAll(new OptimizeTask(chunks, start, mid, running), new OptimizeTask(chunks, mid, end, running));
         }
     }
 
@@ -109,55 +178,77 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, SECTION> extends FaweQueue {
 
     @Override
     public boolean regenerateChunk(int x, int z) {
+        invalidateChunk(x, z);
         return regenerateChunk(getWorld(), x, z);
     }
 
-    @Override
-    public void addNotifyTask(int x, int z, Runnable runnable) {
-        long pair = (long) (x) << 32 | (z) & 0xFFFFFFFFL;
-        FaweChunk result = this.blocks.get(pair);
-        if (result == null) {
-            result = this.getFaweChunk(x, z);
-            result.addNotifyTask(runnable);
-            FaweChunk previous = this.blocks.put(pair, result);
-            if (previous == null) {
-                chunks.add(result);
-                return;
+    /**
+     * Get the queued chunk, or add a new one
+     * @param cx
+     * @param cz
+     * @return
+     */
+    public FaweChunk getQueuedFaweChunk(int cx, int cz) {
+        long pair = MathMan.pairInt(cx, cz);
+        FaweChunk chunk = blocks.get(pair);
+        if (chunk == null) {
+            chunk = blocks.computeIfAbsent(pair, chunkFactory);
+            // Not run while holding the lock, as other threads adding chunks would wait on the callback
+            if (getProgressTask() != null) {
+                getProgressTask().run(ProgressType.QUEUE, blocks.size());
             }
-            this.blocks.put(pair, previous);
-            result = previous;
         }
-        result.addNotifyTask(runnable);
+        return chunk;
     }
 
+    @Override
+    public void addNotifyTask(int x, int z, Runnable runnable) {
+        getQueuedFaweChunk(x, z).addNotifyTask(runnable);
+    }
 
-
+    /**
+     * The chunk being written to, which holds a reference so its sections can't be recycled while it's in use<br>
+     *  - Only the writing thread changes it, other threads can only mark it as stale (e.g. when chunks are dispatched)
+     */
     private FaweChunk lastWrappedChunk;
     private int lastX = Integer.MIN_VALUE;
     private int lastZ = Integer.MIN_VALUE;
+    private volatile boolean lastWrappedStale;
+
+    private FaweChunk getWrappedChunk(int cx, int cz) {
+        if (cx != lastX || cz != lastZ || lastWrappedStale) {
+            lastWrappedStale = false;
+            FaweChunk chunk;
+            do {
+                // If the chunk was dispatched and recycled in the meantime, a new one is queued
+                chunk = getQueuedFaweChunk(cx, cz);
+            } while (chunk instanceof CharFaweChunk && !((CharFaweChunk) chunk).tryRetain());
+            releaseWrappedChunk();
+            lastWrappedChunk = chunk;
+            lastX = cx;
+            lastZ = cz;
+        }
+        return lastWrappedChunk;
+    }
+
+    /**
+     * Drop the writer's reference to the chunk being written to (called by the writing thread)
+     */
+    private void releaseWrappedChunk() {
+        FaweChunk chunk = lastWrappedChunk;
+        lastWrappedChunk = null;
+        lastX = Integer.MIN_VALUE;
+        lastZ = Integer.MIN_VALUE;
+        if (chunk instanceof CharFaweChunk) {
+            ((CharFaweChunk) chunk).release();
+        }
+    }
 
     @Override
     public boolean setBlock(int x, int y, int z, int id, int data) {
         int cx = x >> 4;
         int cz = z >> 4;
-        if (cx != lastX || cz != lastZ) {
-            lastX = cx;
-            lastZ = cz;
-            long pair = (long) (cx) << 32 | (cz) & 0xFFFFFFFFL;
-            lastWrappedChunk = this.blocks.get(pair);
-            if (lastWrappedChunk == null) {
-                lastWrappedChunk = this.getFaweChunk(cx, cz);
-                lastWrappedChunk.setBlock(x & 15, y, z & 15, id, data);
-                FaweChunk previous = this.blocks.put(pair, lastWrappedChunk);
-                if (previous == null) {
-                    chunks.add(lastWrappedChunk);
-                    return true;
-                }
-                this.blocks.put(pair, previous);
-                lastWrappedChunk = previous;
-            }
-        }
-        lastWrappedChunk.setBlock(x & 15, y, z & 15, id, data);
+        getWrappedChunk(cx, cz).setBlock(x & 15, y, z & 15, id, data);
         return true;
     }
 
@@ -165,24 +256,7 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, SECTION> extends FaweQueue {
     public boolean setBlock(int x, int y, int z, int id) {
         int cx = x >> 4;
         int cz = z >> 4;
-        if (cx != lastX || cz != lastZ) {
-            lastX = cx;
-            lastZ = cz;
-            long pair = (long) (cx) << 32 | (cz) & 0xFFFFFFFFL;
-            lastWrappedChunk = this.blocks.get(pair);
-            if (lastWrappedChunk == null) {
-                lastWrappedChunk = this.getFaweChunk(x >> 4, z >> 4);
-                lastWrappedChunk.setBlock(x & 15, y, z & 15, id);
-                FaweChunk previous = this.blocks.put(pair, lastWrappedChunk);
-                if (previous == null) {
-                    chunks.add(lastWrappedChunk);
-                    return true;
-                }
-                this.blocks.put(pair, previous);
-                lastWrappedChunk = previous;
-            }
-        }
-        lastWrappedChunk.setBlock(x & 15, y, z & 15, id);
+        getWrappedChunk(cx, cz).setBlock(x & 15, y, z & 15, id);
         return true;
     }
 
@@ -193,24 +267,7 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, SECTION> extends FaweQueue {
         }
         int cx = x >> 4;
         int cz = z >> 4;
-        if (cx != lastX || cz != lastZ) {
-            lastX = cx;
-            lastZ = cz;
-            long pair = (long) (cx) << 32 | (cz) & 0xFFFFFFFFL;
-            lastWrappedChunk = this.blocks.get(pair);
-            if (lastWrappedChunk == null) {
-                lastWrappedChunk = this.getFaweChunk(x >> 4, z >> 4);
-                lastWrappedChunk.setTile(x & 15, y, z & 15, tag);
-                FaweChunk previous = this.blocks.put(pair, lastWrappedChunk);
-                if (previous == null) {
-                    chunks.add(lastWrappedChunk);
-                    return;
-                }
-                this.blocks.put(pair, previous);
-                lastWrappedChunk = previous;
-            }
-        }
-        lastWrappedChunk.setTile(x & 15, y, z & 15, tag);
+        getWrappedChunk(cx, cz).setTile(x & 15, y, z & 15, tag);
     }
 
     @Override
@@ -220,24 +277,7 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, SECTION> extends FaweQueue {
         }
         int cx = x >> 4;
         int cz = z >> 4;
-        if (cx != lastX || cz != lastZ) {
-            lastX = cx;
-            lastZ = cz;
-            long pair = (long) (cx) << 32 | (cz) & 0xFFFFFFFFL;
-            lastWrappedChunk = this.blocks.get(pair);
-            if (lastWrappedChunk == null) {
-                lastWrappedChunk = this.getFaweChunk(x >> 4, z >> 4);
-                lastWrappedChunk.setEntity(tag);
-                FaweChunk previous = this.blocks.put(pair, lastWrappedChunk);
-                if (previous == null) {
-                    chunks.add(lastWrappedChunk);
-                    return;
-                }
-                this.blocks.put(pair, previous);
-                lastWrappedChunk = previous;
-            }
-        }
-        lastWrappedChunk.setEntity(tag);
+        getWrappedChunk(cx, cz).setEntity(tag);
     }
 
     @Override
@@ -247,56 +287,28 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, SECTION> extends FaweQueue {
         }
         int cx = x >> 4;
         int cz = z >> 4;
-        if (cx != lastX || cz != lastZ) {
-            lastX = cx;
-            lastZ = cz;
-            long pair = (long) (cx) << 32 | (cz) & 0xFFFFFFFFL;
-            lastWrappedChunk = this.blocks.get(pair);
-            if (lastWrappedChunk == null) {
-                lastWrappedChunk = this.getFaweChunk(x >> 4, z >> 4);
-                lastWrappedChunk.removeEntity(uuid);
-                FaweChunk previous = this.blocks.put(pair, lastWrappedChunk);
-                if (previous == null) {
-                    chunks.add(lastWrappedChunk);
-                    return;
-                }
-                this.blocks.put(pair, previous);
-                lastWrappedChunk = previous;
-            }
-        }
-        lastWrappedChunk.removeEntity(uuid);
+        getWrappedChunk(cx, cz).removeEntity(uuid);
     }
 
     @Override
     public boolean setBiome(int x, int z, BaseBiome biome) {
-        long pair = (long) (x >> 4) << 32 | (z >> 4) & 0xFFFFFFFFL;
-        FaweChunk result = this.blocks.get(pair);
-        if (result == null) {
-            result = this.getFaweChunk(x >> 4, z >> 4);
-            FaweChunk previous = this.blocks.put(pair, result);
-            if (previous != null) {
-                this.blocks.put(pair, previous);
-                result = previous;
-            } else {
-                chunks.add(result);
-            }
-        }
+        FaweChunk result = getQueuedFaweChunk(x >> 4, z >> 4);
         result.setBiome(x & 15, z & 15, biome);
         return true;
     }
 
+    private final Object dispatchLock = new Object();
+
     @Override
     public FaweChunk next() {
-        lastX = Integer.MIN_VALUE;
-        lastZ = Integer.MIN_VALUE;
+        lastWrappedStale = true;
         try {
             if (this.blocks.size() == 0) {
                 return null;
             }
-            synchronized (blocks) {
-                FaweChunk chunk = chunks.poll();
+            synchronized (dispatchLock) {
+                FaweChunk chunk = blocks.poll();
                 if (chunk != null) {
-                    blocks.remove(chunk.longHash());
                     this.execute(chunk);
                     return chunk;
                 }
@@ -324,10 +336,10 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, SECTION> extends FaweQueue {
 
     @Override
     public int size() {
-        if (chunks.size() == 0 && SetQueue.IMP.getStage(this) != SetQueue.QueueStage.INACTIVE) {
+        if (blocks.size() == 0 && SetQueue.IMP.getStage(this) != SetQueue.QueueStage.INACTIVE) {
             runTasks();
         }
-        return chunks.size();
+        return blocks.size();
     }
 
     private ConcurrentLinkedDeque<FaweChunk> toUpdate = new ConcurrentLinkedDeque<>();
@@ -340,7 +352,7 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, SECTION> extends FaweQueue {
         }
         // Set blocks / entities / biome
         if (getProgressTask() != null) {
-            getProgressTask().run(ProgressType.QUEUE, chunks.size());
+            getProgressTask().run(ProgressType.QUEUE, blocks.size());
             getProgressTask().run(ProgressType.DISPATCH, ++dispatched);
         }
         if (getChangeTask() != null) {
@@ -355,24 +367,39 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, SECTION> extends FaweQueue {
         } else if (!this.setComponents(fc, null)) {
             return false;
         }
+        invalidateChunk(fc.getX(), fc.getZ());
         fc.executeNotifyTasks();
         return true;
     }
 
     @Override
     public void clear() {
+        AtomicBoolean running = optimizing;
+        if (running != null) {
+            running.set(false);
+        }
         this.blocks.clear();
-        this.chunks.clear();
+        lastWrappedStale = true;
+        Arrays.fill(sectionCache, null);
+        synchronized (heightMaps) {
+            heightMaps.clear();
+        }
+        // Pending loads are no longer needed, and anything waiting on one should stop waiting
+        prefetchQueue.clear();
+        synchronized (prefetching) {
+            prefetching.clear();
+            prefetching.notifyAll();
+        }
         runTasks();
     }
 
     @Override
     public void setChunk(FaweChunk chunk) {
-        FaweChunk previous = this.blocks.put(chunk.longHash(), (FaweChunk) chunk);
-        if (previous != null) {
-            chunks.remove(previous);
+        if (chunk instanceof CharFaweChunk) {
+            // The caller may still be using this chunk (it is released once dispatched)
+            ((CharFaweChunk) chunk).retain();
         }
-        chunks.add((FaweChunk) chunk);
+        this.blocks.put(chunk.longHash(), chunk);
     }
 
     public int lastChunkX = Integer.MIN_VALUE;
@@ -382,6 +409,238 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, SECTION> extends FaweQueue {
     public CHUNK lastChunkSections;
     public SECTION lastSection;
 
+    /**
+     * The sections of recently read chunks, so reads which alternate between neighbouring chunks don't look them up again<br>
+     *  - Indexed by the lowest 2 bits of the chunk x/z, so chunks in the same 4x4 area never replace each other<br>
+     *  - A chunk is removed when the queue applies changes to it<br>
+     *  - An entry is only used during the server tick it was read in, so a chunk which is unloaded (or replaced) by the
+     *  server is looked up again, rather than reading its old sections
+     */
+    private final CachedSections[] sectionCache = new CachedSections[16];
+
+    private static final class CachedSections {
+        private final long pair;
+        private final long tick;
+        private final Object sections;
+
+        private CachedSections(long pair, long tick, Object sections) {
+            this.pair = pair;
+            this.tick = tick;
+            this.sections = sections;
+        }
+    }
+
+    /**
+     * Get the sections of a chunk, loading it if required (see ensureChunkLoaded)
+     * @param cx
+     * @param cz
+     * @return the sections, or null if the chunk is not loaded
+     * @throws FaweException.FaweChunkLoadException
+     */
+    public CHUNK getChunkSections(int cx, int cz) throws FaweException.FaweChunkLoadException {
+        long pair = MathMan.pairInt(cx, cz);
+        int index = (cx & 3) | ((cz & 3) << 2);
+        long tick = Fawe.get().getTimer().getTick();
+        CachedSections cached = sectionCache[index];
+        if (cached != null && cached.pair == pair && cached.tick == tick) {
+            return (CHUNK) cached.sections;
+        }
+        if (!ensureChunkLoaded(cx, cz)) {
+            return null;
+        }
+        CHUNK sections = getCachedSections(getWorld(), cx, cz);
+        if (sections != null) {
+            sectionCache[index] = new CachedSections(pair, tick, sections);
+        }
+        return sections;
+    }
+
+    /**
+     * Forget the cached sections and heights of a chunk (i.e. because it was changed)
+     * @param cx
+     * @param cz
+     */
+    public void invalidateChunk(int cx, int cz) {
+        synchronized (heightMaps) {
+            heightMaps.remove(MathMan.pairInt(cx, cz));
+        }
+        int index = (cx & 3) | ((cz & 3) << 2);
+        CachedSections cached = sectionCache[index];
+        if (cached != null && cached.pair == MathMan.pairInt(cx, cz)) {
+            sectionCache[index] = null;
+        }
+        if (cx == lastChunkX && cz == lastChunkZ) {
+            lastChunkX = Integer.MIN_VALUE;
+            lastChunkZ = Integer.MIN_VALUE;
+        }
+    }
+
+    /**
+     * The highest terrain block of each column (z << 4 | x) in recently read chunks<br>
+     *  - [0] is solid terrain and [1] is natural terrain, each is null until it is first needed
+     */
+    private final LinkedHashMap<Long, short[][]> heightMaps = new LinkedHashMap<Long, short[][]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, short[][]> eldest) {
+            return size() > 256;
+        }
+    };
+
+    @Override
+    public int getHighestTerrainBlock(int x, int z, boolean naturalOnly) {
+        int cx = x >> 4;
+        int cz = z >> 4;
+        long pair = MathMan.pairInt(cx, cz);
+        int mode = naturalOnly ? 1 : 0;
+        short[] heights = null;
+        synchronized (heightMaps) {
+            short[][] chunkHeights = heightMaps.get(pair);
+            if (chunkHeights != null) {
+                heights = chunkHeights[mode];
+            }
+        }
+        if (heights == null) {
+            heights = getHeights(cx, cz, naturalOnly);
+            synchronized (heightMaps) {
+                short[][] chunkHeights = heightMaps.get(pair);
+                if (chunkHeights == null) {
+                    heightMaps.put(pair, chunkHeights = new short[2][]);
+                }
+                chunkHeights[mode] = heights;
+            }
+        }
+        return heights[((z & 15) << 4) | (x & 15)];
+    }
+
+    /**
+     * Find the highest terrain block of each column in a chunk, going down one section at a time<br>
+     *  - Empty sections are skipped, and a column is done once its highest block is found
+     * @param cx
+     * @param cz
+     * @param naturalOnly
+     * @return the heights (-1 if a column has none)
+     * @throws FaweException.FaweChunkLoadException if the chunk could not be loaded
+     */
+    private short[] getHeights(int cx, int cz, boolean naturalOnly) throws FaweException.FaweChunkLoadException {
+        CHUNK chunkSections = getChunkSections(cx, cz);
+        if (chunkSections == null) {
+            throw new FaweException.FaweChunkLoadException();
+        }
+        short[] heights = new short[256];
+        Arrays.fill(heights, (short) -1);
+        int remaining = heights.length;
+        for (int layer = 15; layer >= 0 && remaining > 0; layer--) {
+            SECTION section = getCachedSection(chunkSections, layer);
+            if (section == null) {
+                continue;
+            }
+            int minY = layer << 4;
+            for (int i = 0; i < heights.length; i++) {
+                if (heights[i] != -1) {
+                    continue;
+                }
+                int x = i & 15;
+                int z = i >> 4;
+                for (int y = minY + 15; y >= minY; y--) {
+                    if (FaweCache.isTerrain(FaweCache.getId(getCombinedId4Data(section, x, y, z)), naturalOnly)) {
+                        heights[i] = (short) y;
+                        remaining--;
+                        break;
+                    }
+                }
+            }
+        }
+        return heights;
+    }
+
+    @Override
+    public int[] getBlockDistribution(final int minX, final int minY, final int minZ, final int maxX, final int maxY, final int maxZ) {
+        int minCX = minX >> 4;
+        int minCZ = minZ >> 4;
+        int maxCX = maxX >> 4;
+        int maxCZ = maxZ >> 4;
+        prefetchChunks(minCX, minCZ, maxCX, maxCZ);
+        // The chunks are resolved on this thread, so a worker never waits on a chunk load (which may need this thread)
+        final int chunks = (maxCX - minCX + 1) * (maxCZ - minCZ + 1);
+        final Object[] chunkSections = new Object[chunks];
+        for (int cx = minCX, i = 0; cx <= maxCX; cx++) {
+            for (int cz = minCZ; cz <= maxCZ; cz++, i++) {
+                try {
+                    chunkSections[i] = getChunkSections(cx, cz);
+                } catch (FaweException.FaweChunkLoadException ignore) {}
+            }
+        }
+        // Each thread counts every n'th chunk into its own histogram
+        final int threads = Math.max(1, Math.min(Settings.QUEUE.PARALLEL_THREADS, chunks));
+        final int[][] counts = new int[threads][];
+        final int lengthZ = maxCZ - minCZ + 1;
+        final int fMinCX = minCX;
+        final int fMinCZ = minCZ;
+        ArrayList<Runnable> tasks = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            tasks.add(new Runnable() {
+                @Override
+                public void run() {
+                    int[] threadCounts = counts[thread] = new int[65536];
+                    for (int i = thread; i < chunks; i += threads) {
+                        int cx = fMinCX + i / lengthZ;
+                        int cz = fMinCZ + i % lengthZ;
+                        countChunk((CHUNK) chunkSections[i], cx, cz, minX, minY, minZ, maxX, maxY, maxZ, threadCounts);
+                    }
+                }
+            });
+        }
+        if (threads == 1) {
+            tasks.get(0).run();
+        } else {
+            TaskManager.IMP.parallel(tasks, threads);
+        }
+        int[] total = counts[0];
+        for (int t = 1; t < threads; t++) {
+            int[] threadCounts = counts[t];
+            for (int i = 0; i < total.length; i++) {
+                total[i] += threadCounts[i];
+            }
+        }
+        // Layers outside the world are air
+        int outside = Math.max(0, Math.min(maxY, -1) - minY + 1) + Math.max(0, maxY - Math.max(minY, 256) + 1);
+        total[0] += (maxX - minX + 1) * (maxZ - minZ + 1) * outside;
+        return total;
+    }
+
+    /**
+     * Count the blocks of a chunk which are in a cuboid, one section at a time<br>
+     *  - Sections which are empty (or chunks which aren't loaded) are counted as air without reading them<br>
+     *  - Only counts y 0 to 255 (see getBlockDistribution)
+     */
+    private void countChunk(CHUNK chunkSections, int cx, int cz, int minX, int minY, int minZ, int maxX, int maxY, int maxZ, int[] counts) {
+        int bx = cx << 4;
+        int bz = cz << 4;
+        int x1 = Math.max(minX, bx);
+        int x2 = Math.min(maxX, bx + 15);
+        int z1 = Math.max(minZ, bz);
+        int z2 = Math.min(maxZ, bz + 15);
+        int y1 = Math.max(minY, 0);
+        int y2 = Math.min(maxY, 255);
+        for (int layer = y1 >> 4; layer <= y2 >> 4; layer++) {
+            int sy1 = Math.max(y1, layer << 4);
+            int sy2 = Math.min(y2, (layer << 4) + 15);
+            SECTION section = chunkSections != null ? getCachedSection(chunkSections, layer) : null;
+            if (section == null) {
+                counts[0] += (x2 - x1 + 1) * (z2 - z1 + 1) * (sy2 - sy1 + 1);
+                continue;
+            }
+            for (int y = sy1; y <= sy2; y++) {
+                for (int z = z1; z <= z2; z++) {
+                    for (int x = x1; x <= x2; x++) {
+                        counts[getCombinedId4Data(section, x, y, z)]++;
+                    }
+                }
+            }
+        }
+    }
+
     public SECTION getCachedSection(CHUNK chunk, int cy) {
         return (SECTION) lastChunkSections;
     }
@@ -397,14 +656,162 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, SECTION> extends FaweQueue {
 
     long average = 0;
 
+    /**
+     * Chunks which have been requested (paired), in the order they should be loaded
+     */
+    private final ConcurrentLinkedDeque<Long> prefetchQueue = new ConcurrentLinkedDeque<>();
+    /**
+     * Chunks which have been requested, but not yet attempted
+     */
+    private final Set<Long> prefetching = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+    private final AtomicBoolean prefetchScheduled = new AtomicBoolean();
+
+    /**
+     * Loads the requested chunks on the main thread<br>
+     *  - As many as fit in the time budget are loaded each tick (only one if the server is lagging)<br>
+     *  - Threads waiting on a chunk are notified after each batch
+     */
+    private final Runnable prefetchTask = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                long start = System.currentTimeMillis();
+                boolean free = Fawe.get().getTimer().isAbove(18.5);
+                Long pair;
+                while ((pair = prefetchQueue.poll()) != null) {
+                    if (!prefetching.remove(pair)) {
+                        continue;
+                    }
+                    int cx = MathMan.unpairIntX(pair);
+                    int cz = MathMan.unpairIntY(pair);
+                    if (isChunkLoaded(cx, cz)) {
+                        continue;
+                    }
+                    try {
+                        loadChunk(getWorld(), cx, cz, true);
+                    } catch (Throwable e) {
+                        MainUtil.handleError(e);
+                    }
+                    if (!free || System.currentTimeMillis() - start > PREFETCH_BATCH_MS) {
+                        break;
+                    }
+                }
+            } finally {
+                synchronized (prefetching) {
+                    prefetching.notifyAll();
+                }
+                prefetchScheduled.set(false);
+                if (!prefetchQueue.isEmpty()) {
+                    schedulePrefetch();
+                }
+            }
+        }
+    };
+
+    /**
+     * The time (ms) spent loading chunks per tick
+     */
+    private static final int PREFETCH_BATCH_MS = 25;
+
+    private void schedulePrefetch() {
+        if (prefetchScheduled.compareAndSet(false, true)) {
+            TaskManager.IMP.task(prefetchTask);
+        }
+    }
+
+    /**
+     * Request a chunk to be loaded by the next batch
+     * @param cx
+     * @param cz
+     * @param first if the chunk is needed now (i.e. skip ahead of the other requests)
+     * @return the paired chunk coordinates
+     */
+    private long prefetchChunk(int cx, int cz, boolean first) {
+        long pair = MathMan.pairInt(cx, cz);
+        if (prefetching.add(pair) || first) {
+            if (first) {
+                prefetchQueue.addFirst(pair);
+            } else {
+                prefetchQueue.add(pair);
+            }
+        }
+        return pair;
+    }
+
+    private boolean canPrefetch() {
+        return Settings.HISTORY.CHUNK_WAIT_MS > 0 && Thread.currentThread() != Fawe.get().getMainThread();
+    }
+
+    /**
+     * Request the chunks in a region to be loaded ahead of time<br>
+     *  - Only the chunks which the region contains are requested, not its whole bounding box (i.e. a sphere or polygon)
+     * @param region
+     */
+    @Override
+    public void prefetchChunks(Region region) {
+        if (region instanceof CuboidRegion) {
+            super.prefetchChunks(region);
+            return;
+        }
+        if (!canPrefetch()) {
+            return;
+        }
+        boolean added = false;
+        for (Vector2D chunk : region.getChunks()) {
+            int cx = chunk.getBlockX();
+            int cz = chunk.getBlockZ();
+            if (!isChunkLoaded(cx, cz)) {
+                prefetchChunk(cx, cz, false);
+                added = true;
+            }
+        }
+        if (added) {
+            schedulePrefetch();
+        }
+    }
+
+    @Override
+    public void prefetchChunks(int minCX, int minCZ, int maxCX, int maxCZ) {
+        if (!canPrefetch()) {
+            return;
+        }
+        boolean added = false;
+        for (int cx = minCX; cx <= maxCX; cx++) {
+            for (int cz = minCZ; cz <= maxCZ; cz++) {
+                if (!isChunkLoaded(cx, cz)) {
+                    prefetchChunk(cx, cz, false);
+                    added = true;
+                }
+            }
+        }
+        if (added) {
+            schedulePrefetch();
+        }
+    }
+
     public boolean ensureChunkLoaded(int cx, int cz) throws FaweException.FaweChunkLoadException {
         if (!isChunkLoaded(cx, cz)) {
             boolean sync = Thread.currentThread() == Fawe.get().getMainThread();
             if (sync) {
                 loadChunk(getWorld(), cx, cz, true);
             } else if (Settings.HISTORY.CHUNK_WAIT_MS > 0) {
-                loadChunk.value = new IntegerPair(cx, cz);
-                TaskManager.IMP.syncWhenFree(loadChunk, Settings.HISTORY.CHUNK_WAIT_MS);
+                // Wait for the next batch, rather than a main thread task for this chunk alone
+                long pair = prefetchChunk(cx, cz, true);
+                schedulePrefetch();
+                long deadline = System.currentTimeMillis() + Settings.HISTORY.CHUNK_WAIT_MS;
+                try {
+                    synchronized (prefetching) {
+                        while (prefetching.contains(pair)) {
+                            long remaining = deadline - System.currentTimeMillis();
+                            if (remaining <= 0) {
+                                break;
+                            }
+                            prefetching.wait(remaining);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    MainUtil.handleError(e);
+                }
                 if (!isChunkLoaded(cx, cz)) {
                     throw new FaweException.FaweChunkLoadException();
                 }
@@ -423,10 +830,11 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, SECTION> extends FaweQueue {
         if (cx != lastChunkX || cz != lastChunkZ) {
             lastChunkX = cx;
             lastChunkZ = cz;
-            if (!ensureChunkLoaded(cx, cz)) {
+            CHUNK sections = getChunkSections(cx, cz);
+            if (sections == null) {
                 return false;
             }
-            lastChunkSections = getCachedSections(getWorld(), cx, cz);
+            lastChunkSections = sections;
             lastSection = getCachedSection(lastChunkSections, cy);
         } else if (cy != lastChunkY) {
             if (lastChunkSections == null) {
@@ -492,10 +900,11 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, SECTION> extends FaweQueue {
         if (cx != lastChunkX || cz != lastChunkZ) {
             lastChunkX = cx;
             lastChunkZ = cz;
-            if (!ensureChunkLoaded(cx, cz)) {
+            CHUNK sections = getChunkSections(cx, cz);
+            if (sections == null) {
                 return 0;
             }
-            lastChunkSections = getCachedSections(getWorld(), cx, cz);
+            lastChunkSections = sections;
             lastSection = getCachedSection(lastChunkSections, cy);
         } else if (cy != lastChunkY) {
             if (lastChunkSections == null) {
@@ -518,10 +927,11 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, SECTION> extends FaweQueue {
         if (cx != lastChunkX || cz != lastChunkZ) {
             lastChunkX = cx;
             lastChunkZ = cz;
-            if (!ensureChunkLoaded(cx, cz)) {
+            CHUNK sections = getChunkSections(cx, cz);
+            if (sections == null) {
                 return 0;
             }
-            lastChunkSections = getCachedSections(getWorld(), cx, cz);
+            lastChunkSections = sections;
             lastSection = getCachedSection(lastChunkSections, cy);
         } else if (cy != lastChunkY) {
             if (lastChunkSections == null) {
@@ -543,10 +953,11 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, SECTION> extends FaweQueue {
         if (cx != lastChunkX || cz != lastChunkZ) {
             lastChunkX = cx;
             lastChunkZ = cz;
-            if (!ensureChunkLoaded(cx, cz)) {
+            CHUNK sections = getChunkSections(cx, cz);
+            if (sections == null) {
                 return 0;
             }
-            lastChunkSections = getCachedSections(getWorld(), cx, cz);
+            lastChunkSections = sections;
             lastSection = getCachedSection(lastChunkSections, cy);
         } else if (cy != lastChunkY) {
             if (lastChunkSections == null) {
@@ -568,10 +979,11 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, SECTION> extends FaweQueue {
         if (cx != lastChunkX || cz != lastChunkZ) {
             lastChunkX = cx;
             lastChunkZ = cz;
-            if (!ensureChunkLoaded(cx, cz)) {
+            CHUNK sections = getChunkSections(cx, cz);
+            if (sections == null) {
                 return 0;
             }
-            lastChunkSections = getCachedSections(getWorld(), cx, cz);
+            lastChunkSections = sections;
             lastSection = getCachedSection(lastChunkSections, cy);
         } else if (cy != lastChunkY) {
             if (lastChunkSections == null) {
@@ -594,10 +1006,11 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, SECTION> extends FaweQueue {
         if (cx != lastChunkX || cz != lastChunkZ) {
             lastChunkX = cx;
             lastChunkZ = cz;
-            if (!ensureChunkLoaded(cx, cz)) {
+            CHUNK sections = getChunkSections(cx, cz);
+            if (sections == null) {
                 return 0;
             }
-            lastChunkSections = getCachedSections(getWorld(), cx, cz);
+            lastChunkSections = sections;
             lastSection = getCachedSection(lastChunkSections, cy);
         } else if (cy != lastChunkY) {
             if (lastChunkSections == null) {
@@ -620,10 +1033,11 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, SECTION> extends FaweQueue {
         if (cx != lastChunkX || cz != lastChunkZ) {
             lastChunkX = cx;
             lastChunkZ = cz;
-            if (!ensureChunkLoaded(cx, cz)) {
+            CHUNK sections = getChunkSections(cx, cz);
+            if (sections == null) {
                 return 0;
             }
-            lastChunkSections = getCachedSections(getWorld(), cx, cz);
+            lastChunkSections = sections;
             lastSection = getCachedSection(lastChunkSections, cy);
         } else if (cy != lastChunkY) {
             if (lastChunkSections == null) {
@@ -646,10 +1060,11 @@ public abstract class MappedFaweQueue<WORLD, CHUNK, SECTION> extends FaweQueue {
         if (cx != lastChunkX || cz != lastChunkZ) {
             lastChunkX = cx;
             lastChunkZ = cz;
-            if (!ensureChunkLoaded(cx, cz)) {
+            CHUNK sections = getChunkSections(cx, cz);
+            if (sections == null) {
                 return 0;
             }
-            lastChunkSections = getCachedSections(getWorld(), cx, cz);
+            lastChunkSections = sections;
             lastSection = getCachedSection(lastChunkSections, cy);
         } else if (cy != lastChunkY) {
             if (lastChunkSections == null) {
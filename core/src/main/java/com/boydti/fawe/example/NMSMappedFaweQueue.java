@@ -20,34 +20,41 @@ public abstract class NMSMappedFaweQueue<WORLD, CHUNK, CHUNKSECTION, SECTION> ex
 
     @Override
     public boolean execute(FaweChunk fc) {
-        if (super.execute(fc)) {
-            sendChunk(fc);
-            if (Settings.LIGHTING.MODE == 0) {
-                return true;
-            }
-            if (relighter == null) {
-                relighter = new NMSRelighter(this);
-            }
-            if (Settings.LIGHTING.MODE == 2) {
-                relighter.addChunk(fc.getX(), fc.getZ(), null);
-                return true;
-            }
-            CharFaweChunk chunk = (CharFaweChunk) fc;
-            boolean relight = false;
-            boolean[] fix = new boolean[16];
-            boolean sky = hasSky();
-            for (int i = 0; i < 16; i++) {
-                if ((sky && ((chunk.getAir(i) & 4095) != 0 || (chunk.getCount(i) & 4095) != 0)) || chunk.getRelight(i) != 0) {
-                    relight = true;
-                    fix[i] = true;
+        try {
+            if (super.execute(fc)) {
+                sendChunk(fc);
+                if (Settings.LIGHTING.MODE == 0) {
+                    return true;
                 }
+                if (relighter == null) {
+                    relighter = new NMSRelighter(this);
+                }
+                if (Settings.LIGHTING.MODE == 2) {
+                    relighter.addChunk(fc.getX(), fc.getZ(), null);
+                    return true;
+                }
+                CharFaweChunk chunk = (CharFaweChunk) fc;
+                boolean relight = false;
+                boolean[] fix = new boolean[16];
+                boolean sky = hasSky();
+                for (int i = 0; i < 16; i++) {
+                    if ((sky && ((chunk.getAir(i) & 4095) != 0 || (chunk.getCount(i) & 4095) != 0)) || chunk.getRelight(i) != 0) {
+                        relight = true;
+                        fix[i] = true;
+                    }
+                }
+                if (relight) {
+                    relighter.addChunk(chunk.getX(), chunk.getZ(), fix);
+                }
+                return true;
+            } else {
+                return false;
             }
-            if (relight) {
-                relighter.addChunk(chunk.getX(), chunk.getZ(), fix);
+        } finally {
+            // The chunk has been applied, so the queue no longer needs its sections
+            if (fc instanceof CharFaweChunk) {
+                ((CharFaweChunk) fc).release();
             }
-            return true;
-        } else {
-            return false;
         }
     }
 
@@ -114,10 +121,11 @@ public abstract class NMSMappedFaweQueue<WORLD, CHUNK, CHUNKSECTION, SECTION> ex
         if (cx != lastChunkX || cz != lastChunkZ) {
             lastChunkX = cx;
             lastChunkZ = cz;
-            if (!ensureChunkLoaded(cx, cz)) {
+            CHUNKSECTION sections = getChunkSections(cx, cz);
+            if (sections == null) {
                 return;
             }
-            lastChunkSections = getCachedSections(getWorld(), cx, cz);
+            lastChunkSections = sections;
             lastSection = getCachedSection(lastChunkSections, cy);
         } else if (cy != lastChunkY) {
             if (lastChunkSections == null) {
@@ -138,10 +146,11 @@ public abstract class NMSMappedFaweQueue<WORLD, CHUNK, CHUNKSECTION, SECTION> ex
         if (cx != lastChunkX || cz != lastChunkZ) {
             lastChunkX = cx;
             lastChunkZ = cz;
-            if (!ensureChunkLoaded(cx, cz)) {
+            CHUNKSECTION sections = getChunkSections(cx, cz);
+            if (sections == null) {
                 return;
             }
-            lastChunkSections = getCachedSections(getWorld(), cx, cz);
+            lastChunkSections = sections;
             lastSection = getCachedSection(lastChunkSections, cy);
         } else if (cy != lastChunkY) {
             if (lastChunkSections == null) {
@@ -1,27 +1,35 @@
 package com.boydti.fawe.example;
 
 import com.boydti.fawe.FaweCache;
+import com.boydti.fawe.config.Settings;
 import com.boydti.fawe.object.FaweQueue;
+import com.boydti.fawe.object.collection.IntQueue;
+import com.boydti.fawe.object.collection.LongLinkedHashMap;
+import com.boydti.fawe.object.exception.FaweException;
 import com.boydti.fawe.util.MathMan;
+import com.boydti.fawe.util.TaskManager;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 public class NMSRelighter {
     private final NMSMappedFaweQueue queue;
-    private final HashMap<Long, RelightSkyEntry> skyToRelight;
-    private final HashMap<Long, RelightBlockEntry> blocksToRelight;
+    private final LongLinkedHashMap<RelightSkyEntry> skyToRelight;
+    private final LongLinkedHashMap<RelightBlockEntry> blocksToRelight;
 
     private static final int DISPATCH_SIZE = 64;
 
+    /**
+     * Block light is spread in tiles of (1 << TILE_BITS) x (1 << TILE_BITS) chunks, which are processed in parallel
+     */
+    private static final int TILE_BITS = 2;
+
     public NMSRelighter(NMSMappedFaweQueue queue) {
         this.queue = queue;
-        skyToRelight = new HashMap<>();
-        blocksToRelight = new HashMap<>();
+        skyToRelight = new LongLinkedHashMap<>();
+        blocksToRelight = new LongLinkedHashMap<>();
     }
 
     public boolean addChunk(int cx, int cz, boolean[] fix) {
@@ -34,10 +42,8 @@ public class NMSRelighter {
     }
 
     public void removeLighting() {
-        for (Map.Entry<Long, RelightSkyEntry> entry : skyToRelight.entrySet()) {
-            RelightSkyEntry chunk = entry.getValue();
-            queue.ensureChunkLoaded(chunk.x, chunk.z);
-            Object sections = queue.getCachedSections(queue.getWorld(), chunk.x, chunk.z);
+        for (RelightSkyEntry chunk : skyToRelight.values()) {
+            Object sections = queue.getChunkSections(chunk.x, chunk.z);
             queue.removeLighting(sections, FaweQueue.RelightMode.ALL, queue.hasSky());
         }
     }
@@ -68,19 +74,74 @@ public class NMSRelighter {
         }
     }
 
+    /**
+     * Spread block light<br>
+     *  - Chunks are grouped into tiles which are lit in parallel using the chunk sections directly<br>
+     *  - Light which needs to cross into another tile is then spread on this thread
+     */
     public void fixBlockLighting() {
+        if (blocksToRelight.isEmpty()) {
+            return;
+        }
+        LongLinkedHashMap<RelightTile> tiles = new LongLinkedHashMap<>();
+        ArrayList<RelightBlockEntry> unloaded = new ArrayList<>();
+        RelightBlockEntry entry;
+        while ((entry = blocksToRelight.poll()) != null) {
+            try {
+                entry.sections = queue.getChunkSections(entry.x, entry.z);
+            } catch (FaweException.FaweChunkLoadException ignore) {}
+            if (entry.sections == null) {
+                unloaded.add(entry);
+                continue;
+            }
+            long tileKey = MathMan.pairInt(entry.x >> TILE_BITS, entry.z >> TILE_BITS);
+            RelightTile tile = tiles.get(tileKey);
+            if (tile == null) {
+                tile = new RelightTile();
+                tiles.put(tileKey, tile);
+            }
+            tile.add(entry);
+        }
+        List<RelightTile> list = tiles.values();
+        if (list.size() > 1 && Settings.QUEUE.PARALLEL_THREADS > 1) {
+            TaskManager.IMP.parallel(new ArrayList<Runnable>(list), null);
+        } else {
+            for (RelightTile tile : list) {
+                tile.run();
+            }
+        }
+        // Reconcile the tile borders
+        for (RelightTile tile : list) {
+            for (RelightBlockEntry relit : tile.entries.values()) {
+                IntQueue deferred = relit.deferred;
+                if (deferred == null) {
+                    continue;
+                }
+                int bx = relit.x << 4;
+                int bz = relit.z << 4;
+                while (!deferred.isEmpty()) {
+                    int index = deferred.poll();
+                    addBlock(bx + (index & 15), index >> 8, bz + ((index >> 4) & 15));
+                }
+            }
+        }
+        for (RelightBlockEntry remaining : unloaded) {
+            RelightBlockEntry current = blocksToRelight.putIfAbsent(remaining.coord, remaining);
+            if (current != null) {
+                while (!remaining.blocks.isEmpty()) {
+                    current.blocks.add(remaining.blocks.poll());
+                }
+            }
+        }
         while (!blocksToRelight.isEmpty()) {
-            RelightBlockEntry current = blocksToRelight.entrySet().iterator().next().getValue();
-            int bx = current.getX() << 4;
-            int bz = current.getZ() << 4;
+            RelightBlockEntry current = blocksToRelight.poll();
+            int bx = current.x << 4;
+            int bz = current.z << 4;
             while (!current.blocks.isEmpty()) {
-                short coord = current.blocks.pollFirst();
-                byte layer = MathMan.unpairShortX(coord);
-                int y = MathMan.unpairShortY(coord) & 0xFF;
-                int x = MathMan.unpair16x(layer);
-                int z = MathMan.unpair16y(layer);
-                int xx = bx + x;
-                int zz = bz + z;
+                int index = current.blocks.poll();
+                int y = index >> 8;
+                int xx = bx + (index & 15);
+                int zz = bz + ((index >> 4) & 15);
                 int emit = queue.getEmmittedLight(xx, y, zz);
                 if (emit < 2) {
                     continue;
@@ -96,13 +157,11 @@ public class NMSRelighter {
                     smoothBlockLight(emit, xx, y, zz, xx, y + 1, zz);
                 }
             }
-            blocksToRelight.remove(current.coord);
         }
     }
 
     public void sendChunks() {
-        for (Map.Entry<Long, RelightSkyEntry> entry : skyToRelight.entrySet()) {
-            RelightSkyEntry chunk = entry.getValue();
+        for (RelightSkyEntry chunk : skyToRelight.values()) {
             CharFaweChunk fc = (CharFaweChunk) queue.getFaweChunk(chunk.x, chunk.z);
             int mask = 0;
             for (int y = 0; y < chunk.fix.length; y++) {
@@ -157,8 +216,7 @@ public class NMSRelighter {
                 int bx = chunk.x << 4;
                 int bz = chunk.z << 4;
                 byte[] mask = chunk.mask;
-                queue.ensureChunkLoaded(chunk.x, chunk.z);
-                Object sections = queue.getCachedSections(queue.getWorld(), chunk.x, chunk.z);
+                Object sections = queue.getChunkSections(chunk.x, chunk.z);
                 if (sections == null) continue;
                 Object section = queue.getCachedSection(sections, layer);
                 if (section == null) continue;
@@ -243,8 +301,7 @@ public class NMSRelighter {
         byte[] mask = chunk.mask;
         int bx = chunk.x << 4;
         int bz = chunk.z << 4;
-        queue.ensureChunkLoaded(chunk.x, chunk.z);
-        Object sections = queue.getCachedSections(queue.getWorld(), chunk.x, chunk.z);
+        Object sections = queue.getChunkSections(chunk.x, chunk.z);
         if (sections == null) return;
         Object section = queue.getCachedSection(sections, y >> 4);
         if (section == null) return;
@@ -284,27 +341,121 @@ public class NMSRelighter {
         return true;
     }
 
+    /**
+     * A group of chunks which can have block light spread independently of other tiles
+     */
+    private class RelightTile implements Runnable {
+        private final LongLinkedHashMap<RelightBlockEntry> entries = new LongLinkedHashMap<>();
+        private final ArrayDeque<RelightBlockEntry> pending = new ArrayDeque<>();
+
+        public void add(RelightBlockEntry entry) {
+            entries.put(entry.coord, entry);
+            schedule(entry);
+        }
+
+        private void schedule(RelightBlockEntry entry) {
+            if (!entry.pending && !entry.blocks.isEmpty()) {
+                entry.pending = true;
+                pending.add(entry);
+            }
+        }
+
+        @Override
+        public void run() {
+            RelightBlockEntry current;
+            while ((current = pending.poll()) != null) {
+                current.pending = false;
+                int bx = current.x << 4;
+                int bz = current.z << 4;
+                IntQueue blocks = current.blocks;
+                while (!blocks.isEmpty()) {
+                    int index = blocks.poll();
+                    int y = index >> 8;
+                    Object section = queue.getCachedSection(current.sections, y >> 4);
+                    if (section == null) {
+                        continue;
+                    }
+                    int xx = bx + (index & 15);
+                    int zz = bz + ((index >> 4) & 15);
+                    int emit = queue.getEmmittedLight(section, xx, y, zz);
+                    if (emit < 2) {
+                        continue;
+                    }
+                    boolean inside = spread(current, emit, xx - 1, y, zz);
+                    inside &= spread(current, emit, xx + 1, y, zz);
+                    inside &= spread(current, emit, xx, y, zz - 1);
+                    inside &= spread(current, emit, xx, y, zz + 1);
+                    if (y > 0) {
+                        inside &= spread(current, emit, xx, y - 1, zz);
+                    }
+                    if (y < 255) {
+                        inside &= spread(current, emit, xx, y + 1, zz);
+                    }
+                    if (!inside) {
+                        current.defer(index);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Spread light to an adjacent block
+         * @return false if the block is outside this tile
+         */
+        private boolean spread(RelightBlockEntry from, int emit, int x, int y, int z) {
+            RelightBlockEntry target = from;
+            int cx = x >> 4;
+            int cz = z >> 4;
+            if (cx != from.x || cz != from.z) {
+                target = entries.get(MathMan.pairInt(cx, cz));
+                if (target == null) {
+                    return false;
+                }
+            }
+            Object section = queue.getCachedSection(target.sections, y >> 4);
+            if (section == null || queue.getCombinedId4Data(section, x, y, z) != 0) {
+                return true;
+            }
+            int emitAdjacent = queue.getEmmittedLight(section, x, y, z);
+            if (emit - emitAdjacent > 2) {
+                queue.setBlockLight(section, x, y, z, emit - 1);
+                if (y >= 1) {
+                    target.addBlock(x, y, z);
+                    schedule(target);
+                }
+            }
+            return true;
+        }
+    }
+
     private class RelightBlockEntry {
-        public long coord;
-        public ArrayDeque<Short> blocks;
+        public final long coord;
+        public final int x;
+        public final int z;
+        public final IntQueue blocks;
+        public IntQueue deferred;
+        public Object sections;
+        public boolean pending;
 
         public RelightBlockEntry(long pair) {
             this.coord = pair;
-            this.blocks = new ArrayDeque<>(1);
+            this.x = MathMan.unpairIntX(pair);
+            this.z = MathMan.unpairIntY(pair);
+            this.blocks = new IntQueue();
         }
 
+        /**
+         * Add a block (packed as x | z << 4 | y << 8)
+         */
         public void addBlock(int x, int y, int z) {
-            byte layer = MathMan.pair16(x & 15, z & 15);
-            short coord = MathMan.pairByte(layer, y);
-            blocks.add(coord);
+            blocks.add((x & 15) | ((z & 15) << 4) | (y << 8));
         }
 
-        public int getX() {
-            return MathMan.unpairIntX(coord);
-        }
-
-        public int getZ() {
-            return MathMan.unpairIntY(coord);
+        public void defer(int index) {
+            if (deferred == null) {
+                deferred = new IntQueue();
+            }
+            deferred.add(index);
         }
     }
 
@@ -50,9 +50,45 @@ public class NBTStreamer {
     public static abstract class ByteReader extends RunnableVal2<Integer, Integer> {
         @Override
         public void run(Integer index, Integer value) {
-            run(index, value);
+            run((int) index, (int) value);
         }
 
         public abstract void run(int index, int byteValue);
     }
+
+    /**
+     * Receives a byte array in chunks rather than one callback per byte
+     */
+    public static abstract class ByteArrayReader extends RunnableVal2<Integer, byte[]> {
+        @Override
+        public void run(Integer index, byte[] value) {
+            run(index, value, 0, value.length);
+        }
+
+        /**
+         * @param index the array index of buffer[offset]
+         * @param buffer the bytes (reused between calls)
+         * @param offset
+         * @param length
+         */
+        public abstract void run(int index, byte[] buffer, int offset, int length);
+    }
+
+    /**
+     * Receives an int array in chunks rather than one callback per int
+     */
+    public static abstract class IntArrayReader extends RunnableVal2<Integer, int[]> {
+        @Override
+        public void run(Integer index, int[] value) {
+            run(index, value, 0, value.length);
+        }
+
+        /**
+         * @param index the array index of buffer[offset]
+         * @param buffer the ints (reused between calls)
+         * @param offset
+         * @param length
+         */
+        public abstract void run(int index, int[] buffer, int offset, int length);
+    }
 }
@@ -6,6 +6,7 @@ import com.boydti.fawe.object.clipboard.CPUOptimizedClipboard;
 import com.boydti.fawe.object.clipboard.DiskOptimizedClipboard;
 import com.boydti.fawe.object.clipboard.FaweClipboard;
 import com.boydti.fawe.object.clipboard.MemoryOptimizedClipboard;
+import com.boydti.fawe.util.MainUtil;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.jnbt.ListTag;
 import com.sk89q.jnbt.NBTInputStream;
@@ -15,7 +16,16 @@ import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
 import com.sk89q.worldedit.regions.CuboidRegion;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class SchematicStreamer extends NBTStreamer {
     private final UUID uuid;
@@ -37,22 +47,32 @@ public class SchematicStreamer extends NBTStreamer {
         addReader("Schematic.Blocks.?", initializer);
         addReader("Schematic.Data.?", initializer);
         addReader("Schematic.AddBlocks.?", initializer);
-        addReader("Schematic.Blocks.#", new ByteReader() {
+        addReader("Schematic.Blocks.#", new ByteArrayReader() {
             @Override
-            public void run(int index, int value) {
-                fc.setId(index, value);
+            public void run(int index, byte[] buffer, int offset, int length) {
+                write(BLOCKS, index, buffer, offset, length);
             }
         });
-        addReader("Schematic.Data.#", new ByteReader() {
+        addReader("Schematic.Data.#", new ByteArrayReader() {
             @Override
-            public void run(int index, int value) {
-                fc.setData(index, value);
+            public void run(int index, byte[] buffer, int offset, int length) {
+                write(DATA, index, buffer, offset, length);
             }
         });
-        addReader("Schematic.AddBlocks.#", new ByteReader() {
+        addReader("Schematic.AddBlocks.#", new ByteArrayReader() {
             @Override
-            public void run(int index, int value) {
-                fc.setAdd(index, value);
+            public void run(int index, byte[] buffer, int offset, int length) {
+                // Two blocks per byte, the even index is the low nibble
+                byte[] adds = new byte[length << 1];
+                for (int i = 0, j = 0; i < length; i++) {
+                    byte value = buffer[offset + i];
+                    adds[j++] = (byte) (value & 0xF);
+                    adds[j++] = (byte) ((value >> 4) & 0xF);
+                }
+                Vector dimensions = fc.getDimensions();
+                int volume = dimensions.getBlockX() * dimensions.getBlockY() * dimensions.getBlockZ();
+                index <<= 1;
+                write(ADD, index, adds, 0, Math.max(0, Math.min(adds.length, volume - index)));
             }
         });
 
@@ -145,6 +165,156 @@ public class SchematicStreamer extends NBTStreamer {
         });
     }
 
+    private static final int BLOCKS = 0;
+    private static final int DATA = 1;
+    private static final int ADD = 2;
+
+    /**
+     * Block arrays are split into runs of this many blocks, and each run is always written by the same lane
+     */
+    private static final int LANE_BITS = 16;
+
+    /**
+     * The most runs which can be waiting to be written, so the stream waits for the clipboard rather than buffering the file
+     */
+    private static final int MAX_PENDING = 64;
+
+    private static ThreadPoolExecutor pool;
+
+    /**
+     * A fixed pool shared by all loads, which the lanes are run on
+     */
+    private static synchronized ThreadPoolExecutor getPool() {
+        int threads = Math.max(1, Settings.QUEUE.PARALLEL_THREADS);
+        if (pool == null || pool.getCorePoolSize() != threads) {
+            if (pool != null) {
+                pool.shutdown();
+            }
+            final AtomicInteger count = new AtomicInteger();
+            pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "FAWE Schematic-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return pool;
+    }
+
+    /**
+     * Runs its tasks one at a time on the shared pool, so the Blocks / Data / AddBlocks runs for the same blocks are applied in order
+     */
+    private final class Lane implements Runnable {
+        private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        public void execute(Runnable task) {
+            tasks.add(task);
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                while (true) {
+                    try {
+                        getPool().execute(this);
+                        return;
+                    } catch (RejectedExecutionException ignore) {
+                        // The pool was replaced (PARALLEL_THREADS changed) after it was returned
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } finally {
+                    pending.release();
+                }
+            }
+            scheduled.set(false);
+            if (!tasks.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    private Lane[] lanes;
+    private final Semaphore pending = new Semaphore(MAX_PENDING);
+
+    /**
+     * Write a run of blocks to the clipboard<br>
+     *  - A DiskOptimizedClipboard is written on the lanes while the stream carries on decompressing<br>
+     *  - The stream waits if MAX_PENDING runs have not been written yet
+     */
+    private void write(int type, int index, byte[] buffer, int offset, int length) {
+        if (!(fc instanceof DiskOptimizedClipboard) || Settings.QUEUE.PARALLEL_THREADS <= 1) {
+            write(fc, type, index, buffer, offset, length);
+            return;
+        }
+        if (lanes == null) {
+            lanes = new Lane[Settings.QUEUE.PARALLEL_THREADS];
+            for (int i = 0; i < lanes.length; i++) {
+                lanes[i] = new Lane();
+            }
+        }
+        final FaweClipboard clipboard = fc;
+        while (length > 0) {
+            int lane = index >>> LANE_BITS;
+            int amount = Math.min(length, ((lane + 1) << LANE_BITS) - index);
+            final int type2 = type;
+            final int index2 = index;
+            // The buffer is reused by the stream
+            final byte[] copy = Arrays.copyOfRange(buffer, offset, offset + amount);
+            pending.acquireUninterruptibly();
+            lanes[lane % lanes.length].execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        write(clipboard, type2, index2, copy, 0, copy.length);
+                    } catch (Throwable e) {
+                        MainUtil.handleError(e);
+                    }
+                }
+            });
+            index += amount;
+            offset += amount;
+            length -= amount;
+        }
+    }
+
+    private static void write(FaweClipboard fc, int type, int index, byte[] buffer, int offset, int length) {
+        switch (type) {
+            case BLOCKS:
+                fc.setIds(index, buffer, offset, length);
+                break;
+            case DATA:
+                fc.setDatas(index, buffer, offset, length);
+                break;
+            case ADD:
+                fc.setAdds(index, buffer, offset, length);
+                break;
+        }
+    }
+
+    /**
+     * Wait for the lanes to finish writing
+     */
+    private void awaitLanes() {
+        if (lanes == null) {
+            return;
+        }
+        lanes = null;
+        pending.acquireUninterruptibly(MAX_PENDING);
+        pending.release(MAX_PENDING);
+    }
+
     private int height;
     private int width;
     private int length;
@@ -195,7 +365,11 @@ public class SchematicStreamer extends NBTStreamer {
     public Clipboard getClipboard() throws IOException {
         addDimensionReaders();
         addBlockReaders();
-        readFully();
+        try {
+            readFully();
+        } finally {
+            awaitLanes();
+        }
         Vector min = new Vector(originX, originY, originZ);
         Vector offset = new Vector(offsetX, offsetY, offsetZ);
         Vector origin = min.subtract(offset);
@@ -0,0 +1,213 @@
+package com.boydti.fawe.logging.rollback;
+
+import com.boydti.fawe.object.FaweChunk;
+import com.boydti.fawe.object.FaweQueue;
+import com.boydti.fawe.object.change.MutableBlockChange;
+import com.boydti.fawe.object.changeset.DiskStorageHistory;
+import com.boydti.fawe.object.collection.LongLinkedHashMap;
+import com.boydti.fawe.object.extent.FastWorldEditExtent;
+import com.boydti.fawe.util.MainUtil;
+import com.boydti.fawe.util.MathMan;
+import com.boydti.fawe.util.TaskManager;
+import com.sk89q.worldedit.history.UndoContext;
+import com.sk89q.worldedit.history.change.Change;
+import com.sk89q.worldedit.world.World;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Undo a batch of DiskStorageHistory at once<br>
+ *  - Block streams are decoded in parallel into per chunk buckets<br>
+ *  - Each block ends up the same as undoing the edits one at a time (newest first)<br>
+ *  - At most MAX_CHUNKS buckets are kept at once, any other chunks are done in a later pass over the streams
+ */
+public class ParallelRollback {
+
+    /**
+     * The most chunks to decode before flushing them to the queue (each bucket can be up to 256KB)
+     */
+    private static final int MAX_CHUNKS = 256;
+
+    private final World world;
+    private final FaweQueue queue;
+    private final List<DiskStorageHistory> edits = new ArrayList<>();
+    private final LongLinkedHashMap<ChunkBucket> chunks = new LongLinkedHashMap<>();
+    /**
+     * Chunks which have been flushed in a previous pass
+     */
+    private final HashSet<Long> done = new HashSet<>();
+    /**
+     * If a pass found chunks which didn't fit in the batch
+     */
+    private final AtomicBoolean remaining = new AtomicBoolean();
+    private boolean[] failed;
+
+    private final LongLinkedHashMap.Factory<ChunkBucket> bucketFactory = new LongLinkedHashMap.Factory<ChunkBucket>() {
+        @Override
+        public ChunkBucket create(long pair) {
+            return new ChunkBucket(queue.getFaweChunk(MathMan.unpairIntX(pair), MathMan.unpairIntY(pair)));
+        }
+    };
+
+    public ParallelRollback(World world, FaweQueue queue) {
+        this.world = world;
+        this.queue = queue;
+    }
+
+    /**
+     * Add an edit to undo<br>
+     *  - Edits must be added newest first (the order returned by the RollbackDatabase)
+     * @param edit
+     */
+    public void add(DiskStorageHistory edit) {
+        edits.add(edit);
+    }
+
+    public List<DiskStorageHistory> getEdits() {
+        return edits;
+    }
+
+    /**
+     * Get the edits which were fully undone by apply() (i.e. every stream could be read)
+     * @return
+     */
+    public List<DiskStorageHistory> getAppliedEdits() {
+        if (failed == null) {
+            return new ArrayList<>();
+        }
+        ArrayList<DiskStorageHistory> applied = new ArrayList<>(edits.size());
+        for (int i = 0; i < edits.size(); i++) {
+            if (!failed[i]) {
+                applied.add(edits.get(i));
+            }
+        }
+        return applied;
+    }
+
+    public int size() {
+        return edits.size();
+    }
+
+    /**
+     * Undo all the edits and wait for the queue to finish
+     */
+    public void apply() {
+        if (edits.isEmpty()) {
+            return;
+        }
+        failed = new boolean[edits.size()];
+        ArrayList<Runnable> tasks = new ArrayList<>(edits.size());
+        for (int i = 0; i < edits.size(); i++) {
+            final int index = i;
+            tasks.add(new Runnable() {
+                @Override
+                public void run() {
+                    // Older edits are undone last, so they have a higher rank
+                    if (!decode(edits.get(index), index + 1)) {
+                        failed[index] = true;
+                    }
+                }
+            });
+        }
+        do {
+            remaining.set(false);
+            TaskManager.IMP.parallel(tasks, null);
+            ChunkBucket bucket;
+            while ((bucket = chunks.poll()) != null) {
+                done.add(bucket.chunk.longHash());
+                bucket.chunk.addToQueue();
+            }
+            queue.flush();
+        } while (remaining.get());
+        done.clear();
+        // Tiles and entities are comparatively rare, so are undone in order
+        UndoContext context = new UndoContext();
+        context.setExtent(new FastWorldEditExtent(world, queue));
+        for (int i = 0; i < edits.size(); i++) {
+            DiskStorageHistory edit = edits.get(i);
+            try {
+                undo(edit.getTileIterator(edit.getTileCreateIS(), true, false), context);
+                undo(edit.getTileIterator(edit.getTileRemoveIS(), false, false), context);
+                undo(edit.getEntityIterator(edit.getEntityCreateIS(), true, false), context);
+                undo(edit.getEntityIterator(edit.getEntityRemoveIS(), false, false), context);
+            } catch (Throwable e) {
+                failed[i] = true;
+                MainUtil.handleError(e);
+            }
+        }
+        queue.flush();
+    }
+
+    private void undo(Iterator<? extends Change> iterator, UndoContext context) throws Exception {
+        while (iterator.hasNext()) {
+            iterator.next().undo(context);
+        }
+    }
+
+    /**
+     * Decode the blocks of an edit in chunks which are in the current batch
+     * @return false if the stream could not be read
+     */
+    private boolean decode(DiskStorageHistory edit, int rank) {
+        try {
+            Iterator<MutableBlockChange> iterator = edit.getBlockIterator(false);
+            ChunkBucket last = null;
+            int lastX = Integer.MIN_VALUE;
+            int lastZ = Integer.MIN_VALUE;
+            while (iterator.hasNext()) {
+                MutableBlockChange change = iterator.next();
+                int cx = change.x >> 4;
+                int cz = change.z >> 4;
+                if (cx != lastX || cz != lastZ) {
+                    lastX = cx;
+                    lastZ = cz;
+                    long pair = MathMan.pairInt(cx, cz);
+                    last = done.contains(pair) ? null : chunks.get(pair);
+                    if (last == null && !done.contains(pair)) {
+                        if (chunks.size() < MAX_CHUNKS) {
+                            last = chunks.computeIfAbsent(pair, bucketFactory);
+                        } else {
+                            remaining.set(true);
+                        }
+                    }
+                }
+                if (last != null) {
+                    last.set(change.x & 15, change.y, change.z & 15, change.id, change.data, rank);
+                }
+            }
+            return true;
+        } catch (Throwable e) {
+            MainUtil.handleError(e);
+            return false;
+        }
+    }
+
+    private static class ChunkBucket {
+        private final FaweChunk chunk;
+        /**
+         * The rank of the edit which last set each block, per section
+         */
+        private final int[][] ranks = new int[16][];
+
+        private ChunkBucket(FaweChunk chunk) {
+            this.chunk = chunk;
+        }
+
+        public synchronized void set(int x, int y, int z, int id, int data, int rank) {
+            int layer = y >> 4;
+            int[] layerRanks = ranks[layer];
+            if (layerRanks == null) {
+                layerRanks = ranks[layer] = new int[4096];
+            }
+            int index = ((y & 15) << 8) | (z << 4) | x;
+            if (layerRanks[index] > rank) {
+                return;
+            }
+            layerRanks[index] = rank;
+            chunk.setBlock(x, y, z, id, data);
+        }
+    }
+}
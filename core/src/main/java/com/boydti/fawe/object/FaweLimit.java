@@ -29,6 +29,10 @@ public class FaweLimit {
                 return true;
             }
             @Override
+            public boolean MAX_CHECKS(long amount) {
+                return true;
+            }
+            @Override
             public boolean MAX_ENTITIES() {
                 return true;
             }
@@ -62,6 +66,20 @@ public class FaweLimit {
         return MAX_CHECKS-- > 0;
     }
 
+    /**
+     * Use up a number of checks at once
+     * @param amount
+     * @return false if there were not enough checks left
+     */
+    public boolean MAX_CHECKS(long amount) {
+        if (MAX_CHECKS < amount) {
+            MAX_CHECKS = 0;
+            return false;
+        }
+        MAX_CHECKS -= amount;
+        return true;
+    }
+
     public boolean MAX_ITERATIONS() {
         return MAX_ITERATIONS-- > 0;
     }
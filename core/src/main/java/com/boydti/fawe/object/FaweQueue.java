@@ -3,6 +3,7 @@ package com.boydti.fawe.object;
 import com.boydti.fawe.Fawe;
 import com.boydti.fawe.FaweCache;
 import com.boydti.fawe.config.BBC;
+import com.boydti.fawe.object.collection.SectionPool;
 import com.boydti.fawe.object.exception.FaweException;
 import com.boydti.fawe.util.MainUtil;
 import com.boydti.fawe.util.MathMan;
@@ -14,6 +15,7 @@ import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.blocks.BlockMaterial;
+import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.world.biome.BaseBiome;
 import com.sk89q.worldedit.world.registry.BundledBlockData;
 import java.io.File;
@@ -39,6 +41,7 @@ public abstract class FaweQueue {
     public enum ProgressType {
         QUEUE,
         DISPATCH,
+        OPTIMIZE,
         DONE,
     }
 
@@ -110,6 +113,25 @@ public abstract class FaweQueue {
 
     public void optimize() {}
 
+    /**
+     * Request the chunks in a region to be loaded ahead of time, so that reading it does not wait on one chunk at a time
+     * @param region
+     */
+    public void prefetchChunks(Region region) {
+        Vector min = region.getMinimumPoint();
+        Vector max = region.getMaximumPoint();
+        prefetchChunks(min.getBlockX() >> 4, min.getBlockZ() >> 4, max.getBlockX() >> 4, max.getBlockZ() >> 4);
+    }
+
+    /**
+     * Request chunks to be loaded ahead of time (if the queue supports it)
+     * @param minCX
+     * @param minCZ
+     * @param maxCX
+     * @param maxCZ
+     */
+    public void prefetchChunks(int minCX, int minCZ, int maxCX, int maxCZ) {}
+
     public abstract boolean setBlock(final int x, final int y, final int z, final int id, final int data);
 
     public boolean setBlock(int x, int y, int z, int id) {
@@ -227,6 +249,7 @@ public abstract class FaweQueue {
         MemUtil.memoryLimitedTask();
         // Clear block placement
         clear();
+        SectionPool.clear();
         Fawe.get().getWorldEdit().clearSessions();
         // GC
         System.gc();
@@ -280,6 +303,38 @@ public abstract class FaweQueue {
 
     public abstract CompoundTag getTileEntity(int x, int y, int z) throws FaweException.FaweChunkLoadException;
 
+    /**
+     * Get the highest terrain block in a column (see FaweCache.isTerrain)
+     * @param x
+     * @param z
+     * @param naturalOnly
+     * @return the y, or -1 if there is none
+     */
+    public int getHighestTerrainBlock(int x, int z, boolean naturalOnly) {
+        for (int y = 255; y >= 0; y--) {
+            if (FaweCache.isTerrain(FaweCache.getId(getCombinedId4Data(x, y, z, 0)), naturalOnly)) {
+                return y;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Count the blocks in a cuboid by combined id (id << 4 | data)
+     * @return [ combined ] => count
+     */
+    public int[] getBlockDistribution(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        int[] counts = new int[65536];
+        for (int y = minY; y <= maxY; y++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int x = minX; x <= maxX; x++) {
+                    counts[getCombinedId4Data(x, y, z, 0)]++;
+                }
+            }
+        }
+        return counts;
+    }
+
     public int getCombinedId4Data(int x, int y, int z, int def) {
         try {
             return getCombinedId4Data(x, y, z);
@@ -1,5 +1,6 @@
 package com.boydti.fawe.object.changeset;
 
+import com.boydti.fawe.example.CharFaweChunk;
 import com.boydti.fawe.object.FaweChunk;
 import com.boydti.fawe.object.FaweQueue;
 import com.boydti.fawe.object.RunnableVal2;
@@ -45,6 +46,10 @@ public class CPUOptimizedChangeSet extends FaweChangeSet {
                         }
                     }
                 }
+                if (next instanceof CharFaweChunk) {
+                    // Kept for undo, so the sections must not be recycled
+                    ((CharFaweChunk) next).retain();
+                }
                 changes.add(new MutableChunkChange(previous, next));
             }
         });
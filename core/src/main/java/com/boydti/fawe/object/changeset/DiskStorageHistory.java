@@ -2,9 +2,10 @@ package com.boydti.fawe.object.changeset;
 
 import com.boydti.fawe.Fawe;
 import com.boydti.fawe.config.Settings;
-import com.boydti.fawe.object.FaweInputStream;
 import com.boydti.fawe.object.IntegerPair;
 import com.boydti.fawe.object.RegionWrapper;
+import com.boydti.fawe.object.change.MutableFullBlockChange;
+import com.boydti.fawe.object.io.FileSectionInputStream;
 import com.boydti.fawe.util.MainUtil;
 import com.sk89q.jnbt.NBTInputStream;
 import com.sk89q.jnbt.NBTOutputStream;
@@ -15,9 +16,17 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Store the change on disk
@@ -56,22 +65,63 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
 
     private int index;
 
-    public DiskStorageHistory(World world, UUID uuid) {
-        super(world);
-        File folder = MainUtil.getFile(Fawe.imp().getDirectory(), Settings.PATHS.HISTORY + File.separator + Fawe.imp().getWorldName(world) + File.separator + uuid);
-        int max = 0;
-        if (folder.exists()) {
-            for (File file : folder.listFiles()) {
-                String name = file.getName().split("\\.")[0];
-                if (name.matches("\\d+")) {
-                    int index = Integer.parseInt(name);
-                    if (index > max) {
-                        max = index;
+    /*
+     * Once flushed, the other streams are appended to the .bd file and it ends with a footer
+     *
+     * [sections]...
+     * { block stream, tile remove, tile create, entity remove, entity create }
+     *
+     * [footer]
+     * { long length for each section, long FOOTER_MAGIC }
+     *
+     * Until then (or if the server stops before then) the streams are in separate files
+     */
+    private static final int SECTION_BLOCKS = 0;
+    private static final int SECTION_TILE_REMOVE = 1;
+    private static final int SECTION_TILE_CREATE = 2;
+    private static final int SECTION_ENTITY_REMOVE = 3;
+    private static final int SECTION_ENTITY_CREATE = 4;
+    private static final int SECTIONS = 5;
+    private static final int FOOTER_SIZE = (SECTIONS + 1) << 3;
+    private static final long FOOTER_MAGIC = 0x4641574548495354L;
+
+    /**
+     * The {offset, length} of each section, or null if the .bd file has no footer
+     */
+    private long[][] sections;
+
+    /**
+     * The last index used in each history folder, so the folder is only listed once
+     */
+    private static final ConcurrentHashMap<File, AtomicInteger> INDEXES = new ConcurrentHashMap<>();
+
+    private static int nextIndex(File folder) {
+        AtomicInteger counter = INDEXES.get(folder);
+        if (counter == null) {
+            int max = 0;
+            if (folder.exists()) {
+                for (File file : folder.listFiles()) {
+                    String name = file.getName().split("\\.")[0];
+                    if (name.matches("\\d+")) {
+                        int index = Integer.parseInt(name);
+                        if (index > max) {
+                            max = index;
+                        }
                     }
                 }
             }
+            AtomicInteger existing = INDEXES.putIfAbsent(folder, counter = new AtomicInteger(max));
+            if (existing != null) {
+                counter = existing;
+            }
         }
-        init(uuid, ++max);
+        return counter.incrementAndGet();
+    }
+
+    public DiskStorageHistory(World world, UUID uuid) {
+        super(world);
+        File folder = MainUtil.getFile(Fawe.imp().getDirectory(), Settings.PATHS.HISTORY + File.separator + Fawe.imp().getWorldName(world) + File.separator + uuid);
+        init(uuid, nextIndex(folder));
     }
 
     public DiskStorageHistory(World world, UUID uuid, int index) {
@@ -103,6 +153,7 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
 
     public void deleteFiles() {
         bdFile.delete();
+        getLengthFile().delete();
         nbtfFile.delete();
         nbttFile.delete();
         entfFile.delete();
@@ -124,7 +175,7 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
     @Override
     public boolean flush() {
         super.flush();
-        boolean flushed = osBD != null || osNBTF != null || osNBTT != null && osENTCF != null || osENTCT != null;
+        boolean flushed = osBD != null || osNBTF != null || osNBTT != null || osENTCF != null || osENTCT != null;
         try {
             if (osBD != null) {
                 osBD.close();
@@ -146,12 +197,206 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
                 osENTCT.close();
                 osENTCT = null;
             }
+            if (flushed) {
+                writeContainer();
+            }
         } catch (Exception e) {
             MainUtil.handleError(e);
         }
         return flushed;
     }
 
+    /**
+     * Append the tile and entity files to the .bd file, followed by the footer<br>
+     *  - The original length is recorded (in .bd.len) first, so an interrupted append can be truncated (see getSections)<br>
+     *  - If flushed before, the container is rebuilt in a temporary file which atomically replaces the .bd file<br>
+     *  - The separate files are only deleted once the container is on disk, so a failure or crash leaves a readable edit
+     * @throws IOException
+     */
+    private void writeContainer() throws IOException {
+        File[] files = {bdFile, nbtfFile, nbttFile, entfFile, enttFile};
+        long[][] existing = getSections();
+        if (existing != null && !nbtfFile.exists() && !nbttFile.exists() && !entfFile.exists() && !enttFile.exists()) {
+            return;
+        }
+        bdFile.getParentFile().mkdirs();
+        long[] lengths = new long[SECTIONS];
+        if (existing == null) {
+            File lengthFile = getLengthFile();
+            try (RandomAccessFile raf = new RandomAccessFile(bdFile, "rw")) {
+                FileChannel channel = raf.getChannel();
+                long original = channel.size();
+                try (FileOutputStream out = new FileOutputStream(lengthFile)) {
+                    ByteBuffer buffer = ByteBuffer.allocate(8);
+                    buffer.putLong(original).flip();
+                    while (buffer.hasRemaining()) {
+                        out.getChannel().write(buffer);
+                    }
+                    out.getChannel().force(true);
+                }
+                try {
+                    channel.position(original);
+                    lengths[SECTION_BLOCKS] = original;
+                    for (int i = 1; i < SECTIONS; i++) {
+                        if (files[i].exists()) {
+                            lengths[i] = copy(files[i], null, channel);
+                        }
+                    }
+                    writeFooter(channel, lengths);
+                    channel.force(true);
+                } catch (IOException e) {
+                    raf.setLength(original);
+                    channel.force(true);
+                    lengthFile.delete();
+                    throw e;
+                }
+            }
+            lengthFile.delete();
+        } else {
+            // Flushed before, so rebuild it with the new streams replacing the old sections
+            File target = new File(bdFile.getPath() + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(target)) {
+                FileChannel channel = out.getChannel();
+                lengths[SECTION_BLOCKS] = copy(bdFile, existing[SECTION_BLOCKS], channel);
+                for (int i = 1; i < SECTIONS; i++) {
+                    if (files[i].exists()) {
+                        lengths[i] = copy(files[i], null, channel);
+                    } else {
+                        lengths[i] = copy(bdFile, existing[i], channel);
+                    }
+                }
+                writeFooter(channel, lengths);
+                channel.force(true);
+            } catch (IOException e) {
+                target.delete();
+                throw e;
+            }
+            try {
+                Files.move(target.toPath(), bdFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(target.toPath(), bdFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        for (int i = 1; i < SECTIONS; i++) {
+            files[i].delete();
+        }
+        sections = null;
+    }
+
+    private void writeFooter(FileChannel channel, long[] lengths) throws IOException {
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+        for (long length : lengths) {
+            footer.putLong(length);
+        }
+        footer.putLong(FOOTER_MAGIC);
+        footer.flip();
+        while (footer.hasRemaining()) {
+            channel.write(footer);
+        }
+    }
+
+    /**
+     * @return the file recording the length of the .bd file before the sections are appended
+     */
+    private File getLengthFile() {
+        return new File(bdFile.getPath() + ".len");
+    }
+
+    /**
+     * Append a file (or a range of it) to a channel
+     * @param file
+     * @param range {offset, length} or null for the whole file
+     * @param channel
+     * @return the number of bytes copied
+     * @throws IOException
+     */
+    private static long copy(File file, long[] range, FileChannel channel) throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel source = in.getChannel();
+            long start = range == null ? 0 : range[0];
+            long length = range == null ? source.size() : range[1];
+            for (long pos = 0; pos < length; ) {
+                long copied = source.transferTo(start + pos, length - pos, channel);
+                if (copied <= 0) {
+                    throw new IOException("Unexpected end of " + file);
+                }
+                pos += copied;
+            }
+            return length;
+        }
+    }
+
+    /**
+     * Read the footer of the .bd file
+     * @return the {offset, length} of each section, or null if the file isn't a container
+     */
+    private long[][] getSections() {
+        long[][] tmp = sections;
+        if (tmp != null) {
+            return tmp;
+        }
+        if (!bdFile.exists()) {
+            return null;
+        }
+        File lengthFile = getLengthFile();
+        if (lengthFile.exists()) {
+            // Appending the sections was interrupted, so remove anything after the block stream (the separate files still exist)
+            try (RandomAccessFile raf = new RandomAccessFile(bdFile, "rw"); RandomAccessFile len = new RandomAccessFile(lengthFile, "r")) {
+                if (len.length() == 8) {
+                    raf.setLength(len.readLong());
+                }
+            } catch (IOException e) {
+                MainUtil.handleError(e);
+                return null;
+            }
+            lengthFile.delete();
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(bdFile, "r")) {
+            long fileLength = raf.length();
+            if (fileLength < FOOTER_SIZE) {
+                return null;
+            }
+            raf.seek(fileLength - FOOTER_SIZE);
+            long[] lengths = new long[SECTIONS];
+            long total = FOOTER_SIZE;
+            for (int i = 0; i < SECTIONS; i++) {
+                lengths[i] = raf.readLong();
+                total += lengths[i];
+            }
+            if (raf.readLong() != FOOTER_MAGIC || total != fileLength) {
+                return null;
+            }
+            tmp = new long[SECTIONS][];
+            long offset = 0;
+            for (int i = 0; i < SECTIONS; i++) {
+                tmp[i] = new long[] {offset, lengths[i]};
+                offset += lengths[i];
+            }
+            return sections = tmp;
+        } catch (IOException e) {
+            MainUtil.handleError(e);
+            return null;
+        }
+    }
+
+    /**
+     * @param section
+     * @param file the separate file for the section
+     * @return the raw section, or null if it is empty
+     * @throws IOException
+     */
+    private InputStream getSectionIS(int section, File file) throws IOException {
+        long[][] sections = getSections();
+        if (sections != null) {
+            long[] range = sections[section];
+            return range[1] == 0 ? null : new FileSectionInputStream(bdFile, range[0], range[1]);
+        }
+        if (!file.exists()) {
+            return null;
+        }
+        return new FileInputStream(file);
+    }
+
     @Override
     public int getCompressedSize() {
         return bdFile.exists() ? (int) bdFile.length() : 0;
@@ -195,7 +440,8 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
     public void writeHeader(int x, int y, int z) throws IOException {
         bdFile.getParentFile().mkdirs();
         bdFile.createNewFile();
-        osBD = getCompressedOS(new FileOutputStream(bdFile));
+        sections = null;
+        osBD = getBlockCompressedOS(new FileOutputStream(bdFile));
         // Mode
         osBD.write((byte) MODE);
         // Origin
@@ -256,12 +502,13 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
 
     @Override
     public InputStream getBlockIS() throws IOException {
-        if (!bdFile.exists()) {
+        InputStream raw = getSectionIS(SECTION_BLOCKS, bdFile);
+        if (raw == null) {
             return null;
         }
-        InputStream is = MainUtil.getCompressedIS(new FileInputStream(bdFile));
-        // skip mode
-        is.skip(1);
+        InputStream is = MainUtil.getCompressedIS(raw);
+        // mode
+        setBlockMode(is.read());
         // origin
         int x = ((is.read() << 24) + (is.read() << 16) + (is.read() << 8) + (is.read() << 0));
         int z = ((is.read() << 24) + (is.read() << 16) + (is.read() << 8) + (is.read() << 0));
@@ -271,34 +518,38 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
 
     @Override
     public NBTInputStream getEntityCreateIS() throws IOException {
-        if (!enttFile.exists()) {
+        InputStream raw = getSectionIS(SECTION_ENTITY_CREATE, enttFile);
+        if (raw == null) {
             return null;
         }
-        return new NBTInputStream(MainUtil.getCompressedIS(new FileInputStream(enttFile)));
+        return new NBTInputStream(MainUtil.getCompressedIS(raw));
     }
 
     @Override
     public NBTInputStream getEntityRemoveIS() throws IOException {
-        if (!entfFile.exists()) {
+        InputStream raw = getSectionIS(SECTION_ENTITY_REMOVE, entfFile);
+        if (raw == null) {
             return null;
         }
-        return new NBTInputStream(MainUtil.getCompressedIS(new FileInputStream(entfFile)));
+        return new NBTInputStream(MainUtil.getCompressedIS(raw));
     }
 
     @Override
     public NBTInputStream getTileCreateIS() throws IOException {
-        if (!nbttFile.exists()) {
+        InputStream raw = getSectionIS(SECTION_TILE_CREATE, nbttFile);
+        if (raw == null) {
             return null;
         }
-        return new NBTInputStream(MainUtil.getCompressedIS(new FileInputStream(nbttFile)));
+        return new NBTInputStream(MainUtil.getCompressedIS(raw));
     }
 
     @Override
     public NBTInputStream getTileRemoveIS() throws IOException {
-        if (!nbtfFile.exists()) {
+        InputStream raw = getSectionIS(SECTION_TILE_REMOVE, nbtfFile);
+        if (raw == null) {
             return null;
         }
-        return new NBTInputStream(MainUtil.getCompressedIS(new FileInputStream(nbtfFile)));
+        return new NBTInputStream(MainUtil.getCompressedIS(raw));
     }
 
     public DiskStorageSummary summarize(RegionWrapper requiredRegion, boolean shallow) {
@@ -308,34 +559,22 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
             if ((ox != 0 || oz != 0) && !requiredRegion.isIn(ox, oz)) {
                 return new DiskStorageSummary(ox, oz);
             }
-            try (FileInputStream fis = new FileInputStream(bdFile)) {
-                FaweInputStream gis = MainUtil.getCompressedIS(fis);
-                // skip mode
-                gis.skip(1);
-                // origin
-                ox = ((gis.read() << 24) + (gis.read() << 16) + (gis.read() << 8) + (gis.read() << 0));
-                oz = ((gis.read() << 24) + (gis.read() << 16) + (gis.read() << 8) + (gis.read() << 0));
-                setOrigin(ox, oz);
+            try (InputStream gis = getBlockIS()) {
+                ox = getOriginX();
+                oz = getOriginZ();
                 DiskStorageSummary summary = new DiskStorageSummary(ox, oz);
-                if (!requiredRegion.isIn(ox, oz)) {
-                    fis.close();
-                    gis.close();
+                if (gis == null || !requiredRegion.isIn(ox, oz)) {
                     return summary;
                 }
-                byte[] buffer = new byte[9];
+                BlockReader reader = getBlockReader(gis);
+                MutableFullBlockChange change = new MutableFullBlockChange(0, 0, 0, 0, 0);
                 int i = 0;
                 int amount = (Settings.HISTORY.BUFFER_SIZE - HEADER_SIZE) / 9;
                 while (!shallow && ++i < amount) {
-                    if (gis.read(buffer) == -1) {
-                        fis.close();
-                        gis.close();
+                    if (!reader.read(change)) {
                         return summary;
                     }
-                    int x = ((byte) buffer[0] & 0xFF) + ((byte) buffer[1] << 8) + ox;
-                    int z = ((byte) buffer[2] & 0xFF) + ((byte) buffer[3] << 8) + oz;
-                    int combined1 = buffer[7] & 0xFF;
-                    int combined2 = buffer[8] & 0xFF;
-                    summary.add(x, z, ((combined2 << 4) + (combined1 >> 4)));
+                    summary.add(change.x, change.z, change.to >> 4);
                 }
             } catch (IOException e) {
                 MainUtil.handleError(e);
@@ -348,7 +587,10 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
         int ox = getOriginX();
         int oz = getOriginZ();
         if (ox == 0 && oz == 0 && bdFile.exists()) {
-            try (FileInputStream fis = new FileInputStream(bdFile)) {
+            try (InputStream fis = getSectionIS(SECTION_BLOCKS, bdFile)) {
+                if (fis == null) {
+                    return new IntegerPair(ox, oz);
+                }
                 final InputStream gis = MainUtil.getCompressedIS(fis);
                 // skip mode
                 gis.skip(1);
@@ -1,8 +1,8 @@
 package com.boydti.fawe.object.changeset;
 
 import com.boydti.fawe.Fawe;
-import com.boydti.fawe.FaweCache;
 import com.boydti.fawe.config.Settings;
+import com.boydti.fawe.example.CharFaweChunk;
 import com.boydti.fawe.object.BytePair;
 import com.boydti.fawe.object.FaweChunk;
 import com.boydti.fawe.object.FawePlayer;
@@ -11,7 +11,6 @@ import com.boydti.fawe.object.RegionWrapper;
 import com.boydti.fawe.object.RunnableVal2;
 import com.boydti.fawe.util.EditSessionBuilder;
 import com.boydti.fawe.util.MainUtil;
-import com.boydti.fawe.util.TaskManager;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.worldedit.BlockVector;
 import com.sk89q.worldedit.EditSession;
@@ -23,10 +22,15 @@ import com.sk89q.worldedit.history.change.EntityCreate;
 import com.sk89q.worldedit.history.change.EntityRemove;
 import com.sk89q.worldedit.history.changeset.ChangeSet;
 import com.sk89q.worldedit.world.World;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public abstract class FaweChangeSet implements ChangeSet {
@@ -167,12 +171,110 @@ public abstract class FaweChangeSet implements ChangeSet {
     private AtomicInteger waiting = new AtomicInteger(0);
     private Object lock = new Object();
 
+    private static ThreadPoolExecutor changePool;
+
+    /**
+     * A fixed pool for diffing chunks, so a large edit doesn't start a thread per chunk<br>
+     *  - Recreated if Settings.QUEUE.PARALLEL_THREADS has changed (e.g. after a reload)
+     */
+    private static synchronized ThreadPoolExecutor getChangePool() {
+        int threads = Math.max(1, Settings.QUEUE.PARALLEL_THREADS);
+        if (changePool == null || changePool.getCorePoolSize() != threads) {
+            if (changePool != null) {
+                changePool.shutdown();
+            }
+            final AtomicInteger count = new AtomicInteger();
+            changePool = (ThreadPoolExecutor) Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "FAWE History-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return changePool;
+    }
+
+    private static void executeChange(Runnable task) {
+        while (true) {
+            try {
+                getChangePool().execute(task);
+                return;
+            } catch (RejectedExecutionException ignore) {
+                // The pool was replaced after it was returned
+            }
+        }
+    }
+
+    /**
+     * The changes of the chunk being diffed by each worker, packed as {index, from, to}
+     */
+    private static final ThreadLocal<long[]> RECORDS = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[4096];
+        }
+    };
+
+    /**
+     * Add a record for each block which was changed in a section<br>
+     *  - Sections which were previously empty (null) are not compared<br>
+     *  - Unchanged blocks (0) are skipped in runs
+     * @param current the new combined ids (0 = unchanged, 1 = air)
+     * @param previous the previous combined ids, or null if the section was air
+     * @param offset the index of the first block in the section (layer << 12)
+     * @param records with room for at least 4096 more records
+     * @param size the current number of records
+     * @return the new number of records
+     */
+    private static int diffSection(char[] current, char[] previous, int offset, long[] records, int size) {
+        if (previous == null) {
+            for (int j = 0; j < 4096; j++) {
+                int combinedIdCurrent = current[j];
+                if (combinedIdCurrent > 1) {
+                    records[size++] = getRecordIndex(offset + j) | ((long) combinedIdCurrent << 32);
+                }
+            }
+            return size;
+        }
+        for (int j = 0; j < 4096; j++) {
+            int combinedIdCurrent = current[j];
+            if (combinedIdCurrent == 0) {
+                while (++j < 4096 && current[j] == 0);
+                if (j == 4096) {
+                    break;
+                }
+                combinedIdCurrent = current[j];
+            }
+            if (combinedIdCurrent == 1) {
+                combinedIdCurrent = 0;
+            }
+            int combinedIdPrevious = previous[j];
+            if (combinedIdCurrent != combinedIdPrevious) {
+                records[size++] = getRecordIndex(offset + j) | ((long) combinedIdPrevious << 16) | ((long) combinedIdCurrent << 32);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @param index the block index in the chunk (y << 8 | z << 4 | x)
+     * @return the record position (y << 8 | x << 4 | z)
+     */
+    private static long getRecordIndex(int index) {
+        return (index & 0xFF00) | ((index & 15) << 4) | ((index >> 4) & 15);
+    }
+
     public void addChangeTask(FaweQueue queue) {
         queue.setChangeTask(new RunnableVal2<FaweChunk, FaweChunk>() {
             @Override
             public void run(final FaweChunk previous, final FaweChunk next) {
                 waiting.incrementAndGet();
-                TaskManager.IMP.async(new Runnable() {
+                if (next instanceof CharFaweChunk) {
+                    ((CharFaweChunk) next).retain();
+                }
+                executeChange(new Runnable() {
                     @Override
                     public void run() {
                         try {
@@ -184,7 +286,9 @@ public abstract class FaweChangeSet implements ChangeSet {
                             {
                                 // TODO
                             }
-                            // Block changes
+                            // Block changes are diffed without the lock, then added in one go
+                            long[] records = RECORDS.get();
+                            int size = 0;
                             {
                                 // Current blocks
                                 char[][] currentIds = next.getCombinedIdArrays();
@@ -192,76 +296,50 @@ public abstract class FaweChangeSet implements ChangeSet {
                                 char[][] previousIds = previous.getCombinedIdArrays();
                                 for (int layer = 0; layer < currentIds.length; layer++) {
                                     char[] currentLayer = currentIds[layer];
-                                    char[] previousLayer = previousIds[layer];
                                     if (currentLayer == null) {
                                         continue;
                                     }
-                                    int startY = layer << 4;
-                                    for (int y = 0; y < 16; y++) {
-                                        short[][] i1 = FaweCache.CACHE_J[y];
-                                        int yy = y + startY;
-                                        for (int x = 0; x < 16; x++) {
-                                            int xx = x + bx;
-                                            short[] i2 = i1[x];
-                                            for (int z = 0; z < 16; z++) {
-                                                int zz = z + bz;
-                                                int index = i2[z];
-                                                int combinedIdCurrent = currentLayer[index];
-                                                switch (combinedIdCurrent) {
-                                                    case 0:
-                                                        continue;
-                                                    case 1:
-                                                        combinedIdCurrent = 0;
-                                                    default:
-                                                        char combinedIdPrevious = previousLayer != null ? previousLayer[index] : 0;
-                                                        if (combinedIdCurrent != combinedIdPrevious) {
-                                                            synchronized (lock) {
-                                                                add(xx, yy, zz, combinedIdPrevious, combinedIdCurrent);
-                                                            }
-                                                        }
-                                                }
-                                            }
-                                        }
+                                    // A section has at most 4096 changes, so the bounds are only checked once
+                                    if (records.length - size < 4096) {
+                                        RECORDS.set(records = Arrays.copyOf(records, Math.max(records.length << 1, size + 4096)));
                                     }
+                                    size = diffSection(currentLayer, previousIds[layer], layer << 12, records, size);
                                 }
                             }
-                            // Tile changes
-                            {
-                                // Tiles created
-                                Map<BytePair, CompoundTag> tiles = next.getTiles();
-                                for (Map.Entry<BytePair, CompoundTag> entry : tiles.entrySet()) {
-                                    synchronized (lock) {
-                                        addTileCreate(entry.getValue());
-                                    }
+                            Map<BytePair, CompoundTag> tilesCreated = next.getTiles();
+                            Map<BytePair, CompoundTag> tilesRemoved = previous.getTiles();
+                            Set<CompoundTag> entitiesCreated = next.getEntities();
+                            Set<CompoundTag> entitiesRemoved = previous.getEntities();
+                            synchronized (lock) {
+                                for (int i = 0; i < size; i++) {
+                                    long record = records[i];
+                                    int index = (int) record & 0xFFFF;
+                                    add(bx + ((index >> 4) & 15), index >> 8, bz + (index & 15), (int) (record >>> 16) & 0xFFFF, (int) (record >>> 32) & 0xFFFF);
                                 }
-                                // Tiles removed
-                                tiles = previous.getTiles();
-                                for (Map.Entry<BytePair, CompoundTag> entry : tiles.entrySet()) {
-                                    synchronized (lock) {
-                                        addTileRemove(entry.getValue());
-                                    }
+                                // Tile changes
+                                for (Map.Entry<BytePair, CompoundTag> entry : tilesCreated.entrySet()) {
+                                    addTileCreate(entry.getValue());
                                 }
-                            }
-                            // Entity changes
-                            {
-                                // Entities created
-                                Set<CompoundTag> entities = next.getEntities();
-                                for (CompoundTag entityTag : entities) {
-                                    synchronized (lock) {
-                                        addEntityCreate(entityTag);
-                                    }
+                                for (Map.Entry<BytePair, CompoundTag> entry : tilesRemoved.entrySet()) {
+                                    addTileRemove(entry.getValue());
                                 }
-                                // Entities removed
-                                entities = previous.getEntities();
-                                for (CompoundTag entityTag : entities) {
-                                    synchronized (lock) {
-                                        addEntityRemove(entityTag);
-                                    }
+                                // Entity changes
+                                for (CompoundTag entityTag : entitiesCreated) {
+                                    addEntityCreate(entityTag);
+                                }
+                                for (CompoundTag entityTag : entitiesRemoved) {
+                                    addEntityRemove(entityTag);
                                 }
                             }
                         } catch (Throwable e) {
                             MainUtil.handleError(e);
                         } finally {
+                            if (next instanceof CharFaweChunk) {
+                                ((CharFaweChunk) next).release();
+                            }
+                            if (previous instanceof CharFaweChunk) {
+                                ((CharFaweChunk) previous).release();
+                            }
                             if (waiting.decrementAndGet() <= 0) {
                                 synchronized (lock) {
                                     lock.notifyAll();
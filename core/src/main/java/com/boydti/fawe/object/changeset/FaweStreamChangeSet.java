@@ -1,7 +1,6 @@
 package com.boydti.fawe.object.changeset;
 
 import com.boydti.fawe.config.Settings;
-import com.boydti.fawe.object.FaweInputStream;
 import com.boydti.fawe.object.FaweOutputStream;
 import com.boydti.fawe.object.change.MutableBlockChange;
 import com.boydti.fawe.object.change.MutableEntityChange;
@@ -17,13 +16,26 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 
 public abstract class FaweStreamChangeSet extends FaweChangeSet {
 
-    public static final int MODE = 3;
+    /**
+     * Block stream modes<br>
+     *  - MODE_FLAT: { short rel x, short rel z, unsigned byte y, short combinedFrom, short combinedTo }...<br>
+     *  - MODE_CHUNK: { int chunk x, int chunk z, short section mask, { medium count, { delta index, short combinedFrom, short combinedTo }... } per section }...
+     */
+    public static final int MODE_FLAT = 3;
+    public static final int MODE_CHUNK = 4;
+    public static final int MODE = MODE_CHUNK;
     public static final int HEADER_SIZE = 9;
 
+    /**
+     * Max changes buffered for a section before the chunk is written
+     */
+    private static final int MAX_GROUP_SECTION = 1 << 19;
+
     private final int compression;
 
     public FaweStreamChangeSet(World world) {
@@ -39,6 +51,16 @@ public abstract class FaweStreamChangeSet extends FaweChangeSet {
         return MainUtil.getCompressedOS(os, compression);
     }
 
+    /**
+     * The block stream is compressed in blocks on the compression pool, rather than on the thread adding the changes
+     * @param os
+     * @return
+     * @throws IOException
+     */
+    public FaweOutputStream getBlockCompressedOS(OutputStream os) throws IOException {
+        return MainUtil.getParallelCompressedOS(os, compression, Settings.HISTORY.BUFFER_SIZE);
+    }
+
     @Override
     public int size() {
         // Flush so we can accurately get the size
@@ -74,6 +96,14 @@ public abstract class FaweStreamChangeSet extends FaweChangeSet {
 
     private int originX;
     private int originZ;
+    private int blockMode = MODE;
+
+    // The chunk currently being buffered
+    private int groupX;
+    private int groupZ;
+    private int groupSize;
+    private final int[] groupSizes = new int[16];
+    private final long[][] groupRecords = new long[16][];
 
     public void setOrigin(int x, int z) {
         originX = x;
@@ -88,30 +118,119 @@ public abstract class FaweStreamChangeSet extends FaweChangeSet {
         return originZ;
     }
 
+    /**
+     * Set the mode of the block stream being read
+     * @param mode
+     */
+    public void setBlockMode(int mode) {
+        this.blockMode = mode;
+    }
+
+    public int getBlockMode() {
+        return blockMode;
+    }
+
+    @Override
+    public boolean flush() {
+        boolean result = super.flush();
+        writeGroup();
+        // The section buffers grow to MAX_GROUP_SECTION records, so don't keep them for a finished (or idle) change set
+        Arrays.fill(groupRecords, null);
+        return result;
+    }
+
     public void add(int x, int y, int z, int combinedFrom, int combinedTo) {
         blockSize++;
-        try {
-            OutputStream stream = getBlockOS(x, y, z);
-            //x
-            x-=originX;
-            stream.write((x) & 0xff);
-            stream.write(((x) >> 8) & 0xff);
-            //z
-            z-=originZ;
-            stream.write((z) & 0xff);
-            stream.write(((z) >> 8) & 0xff);
-            //y
-            stream.write((byte) y);
-            //from
-            stream.write((combinedFrom) & 0xff);
-            stream.write(((combinedFrom) >> 8) & 0xff);
-            //to
-            stream.write((combinedTo) & 0xff);
-            stream.write(((combinedTo) >> 8) & 0xff);
+        int cx = x >> 4;
+        int cz = z >> 4;
+        if (groupSize != 0 && (cx != groupX || cz != groupZ)) {
+            writeGroup();
         }
-        catch (Throwable e) {
+        if (groupSize == 0) {
+            groupX = cx;
+            groupZ = cz;
+        }
+        int layer = y >> 4;
+        long[] records = groupRecords[layer];
+        int size = groupSizes[layer];
+        if (records == null) {
+            records = groupRecords[layer] = new long[64];
+        } else if (size == records.length) {
+            records = groupRecords[layer] = Arrays.copyOf(records, size << 1);
+        }
+        int index = ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+        // The position within the section is kept so sorting by index keeps changes to the same block in order
+        records[size] = ((long) index << 51) | ((long) size << 32) | ((long) (combinedFrom & 0xFFFF) << 16) | (combinedTo & 0xFFFF);
+        groupSizes[layer] = ++size;
+        groupSize++;
+        if (size == MAX_GROUP_SECTION) {
+            writeGroup();
+        }
+    }
+
+    /**
+     * Write the buffered changes for the current chunk
+     */
+    private void writeGroup() {
+        if (groupSize == 0) {
+            return;
+        }
+        try {
+            OutputStream stream = getBlockOS(groupX << 4, 0, groupZ << 4);
+            // Chunk
+            stream.write(groupX >> 24);
+            stream.write(groupX >> 16);
+            stream.write(groupX >> 8);
+            stream.write(groupX);
+            stream.write(groupZ >> 24);
+            stream.write(groupZ >> 16);
+            stream.write(groupZ >> 8);
+            stream.write(groupZ);
+            // Sections
+            int mask = 0;
+            for (int layer = 0; layer < 16; layer++) {
+                if (groupSizes[layer] != 0) {
+                    mask |= 1 << layer;
+                }
+            }
+            stream.write(mask >> 8);
+            stream.write(mask);
+            for (int layer = 0; layer < 16; layer++) {
+                int size = groupSizes[layer];
+                if (size == 0) {
+                    continue;
+                }
+                long[] records = groupRecords[layer];
+                Arrays.sort(records, 0, size);
+                stream.write(size >> 16);
+                stream.write(size >> 8);
+                stream.write(size);
+                int lastIndex = 0;
+                for (int i = 0; i < size; i++) {
+                    long record = records[i];
+                    int index = (int) (record >>> 51);
+                    int delta = index - lastIndex;
+                    lastIndex = index;
+                    // delta (1-2 bytes)
+                    if (delta < 128) {
+                        stream.write(delta);
+                    } else {
+                        stream.write(0x80 | (delta & 0x7F));
+                        stream.write(delta >> 7);
+                    }
+                    //from
+                    stream.write((int) (record >> 16));
+                    stream.write((int) (record >> 24));
+                    //to
+                    stream.write((int) record);
+                    stream.write((int) (record >> 8));
+                }
+                groupSizes[layer] = 0;
+            }
+        } catch (Throwable e) {
             MainUtil.handleError(e);
         }
+        groupSize = 0;
     }
 
     public void addTileCreate(CompoundTag tag) {
@@ -162,39 +281,110 @@ public abstract class FaweStreamChangeSet extends FaweChangeSet {
         }
     }
 
+    /**
+     * Reads the block changes from a block stream (after the header)
+     */
+    public abstract class BlockReader {
+        protected final InputStream is;
+
+        public BlockReader(InputStream is) {
+            this.is = is;
+        }
+
+        /**
+         * Read the next change
+         * @param change
+         * @return false if there are no more changes
+         * @throws IOException
+         */
+        public abstract boolean read(MutableFullBlockChange change) throws IOException;
+    }
+
+    public BlockReader getBlockReader(final InputStream is) {
+        if (blockMode == MODE_FLAT) {
+            return new BlockReader(is) {
+                @Override
+                public boolean read(MutableFullBlockChange change) throws IOException {
+                    int read0 = is.read();
+                    if (read0 == -1) {
+                        return false;
+                    }
+                    change.x = ((byte) read0 & 0xFF) + ((byte) is.read() << 8) + originX;
+                    change.z = ((byte) is.read() & 0xFF) + ((byte) is.read() << 8) + originZ;
+                    change.y = is.read() & 0xff;
+                    change.from = is.read() + (is.read() << 8);
+                    change.to = is.read() + (is.read() << 8);
+                    return true;
+                }
+            };
+        }
+        return new BlockReader(is) {
+            private int bx;
+            private int bz;
+            private int mask;
+            private int by;
+            private int remaining;
+            private int index;
+
+            @Override
+            public boolean read(MutableFullBlockChange change) throws IOException {
+                while (remaining == 0) {
+                    if (mask == 0) {
+                        int read0 = is.read();
+                        if (read0 == -1) {
+                            return false;
+                        }
+                        bx = ((read0 << 24) + (is.read() << 16) + (is.read() << 8) + is.read()) << 4;
+                        bz = ((is.read() << 24) + (is.read() << 16) + (is.read() << 8) + is.read()) << 4;
+                        mask = (is.read() << 8) + is.read();
+                        continue;
+                    }
+                    int layer = Integer.numberOfTrailingZeros(mask);
+                    mask &= mask - 1;
+                    by = layer << 4;
+                    remaining = (is.read() << 16) + (is.read() << 8) + is.read();
+                    index = 0;
+                }
+                int delta = is.read();
+                if (delta == -1) {
+                    return false;
+                }
+                if (delta >= 128) {
+                    delta = (delta & 0x7F) + (is.read() << 7);
+                }
+                index += delta;
+                change.x = bx + (index & 15);
+                change.z = bz + ((index >> 4) & 15);
+                change.y = by + (index >> 8);
+                change.from = is.read() + (is.read() << 8);
+                change.to = is.read() + (is.read() << 8);
+                remaining--;
+                return true;
+            }
+        };
+    }
+
     public Iterator<MutableBlockChange> getBlockIterator(final boolean dir) throws IOException {
         final InputStream is = getBlockIS();
         if (is == null) {
             return new ArrayList<MutableBlockChange>().iterator();
         }
+        final BlockReader reader = getBlockReader(is);
+        final MutableFullBlockChange full = new MutableFullBlockChange(0, 0, 0, 0, 0);
         final MutableBlockChange change = new MutableBlockChange(0, 0, 0, (short) 0, (byte) 0);
         return new Iterator<MutableBlockChange>() {
             private MutableBlockChange last = read();
             public MutableBlockChange read() {
                 try {
-                    int read0 = is.read();
-                    if (read0 == -1) {
+                    if (!reader.read(full)) {
                         return null;
                     }
-                    int x = ((byte) read0 & 0xFF) + ((byte) is.read() << 8) + originX;
-                    int z = ((byte) is.read() & 0xFF) + ((byte) is.read() << 8) + originZ;
-                    int y = is.read() & 0xff;
-                    change.x = x;
-                    change.y = y;
-                    change.z = z;
-                    if (dir) {
-                        is.skip(2);
-                        int to1 = is.read();
-                        int to2 = is.read();
-                        change.id = (short) ((to2 << 4) + (to1 >> 4));
-                        change.data = (byte) (to1 & 0xf);
-                    } else {
-                        int from1 = is.read();
-                        int from2 = is.read();
-                        is.skip(2);
-                        change.id = (short) ((from2 << 4) + (from1 >> 4));
-                        change.data = (byte) (from1 & 0xf);
-                    }
+                    change.x = full.x;
+                    change.y = full.y;
+                    change.z = full.z;
+                    int combined = dir ? full.to : full.from;
+                    change.id = (short) (combined >> 4);
+                    change.data = (byte) (combined & 0xf);
                     return change;
                 } catch (Exception ignoreEOF) {
                     MainUtil.handleError(ignoreEOF);
@@ -233,28 +423,19 @@ public abstract class FaweStreamChangeSet extends FaweChangeSet {
     }
 
     public Iterator<MutableFullBlockChange> getFullBlockIterator(final boolean dir) throws IOException {
-        final FaweInputStream is = new FaweInputStream(getBlockIS());
+        final InputStream is = getBlockIS();
         if (is == null) {
             return new ArrayList<MutableFullBlockChange>().iterator();
         }
+        final BlockReader reader = getBlockReader(is);
         final MutableFullBlockChange change = new MutableFullBlockChange(0, 0, 0, 0, 0);
         return new Iterator<MutableFullBlockChange>() {
             private MutableFullBlockChange last = read();
             public MutableFullBlockChange read() {
                 try {
-                    int read0 = is.read();
-                    if (read0 == -1) {
-                        return null;
+                    if (reader.read(change)) {
+                        return change;
                     }
-                    int x = ((byte) read0 & 0xFF) + ((byte) is.read() << 8) + originX;
-                    int z = ((byte) is.read() & 0xFF) + ((byte) is.read() << 8) + originZ;
-                    int y = is.read() & 0xff;
-                    change.x = x;
-                    change.y = y;
-                    change.z = z;
-                    change.from = ((byte) is.read() & 0xFF) + ((byte) is.read() << 8);
-                    change.to = ((byte) is.read() & 0xFF) + ((byte) is.read() << 8);
-                    return change;
                 } catch (Exception ignoreEOF) {
                     MainUtil.handleError(ignoreEOF);
                 }
@@ -103,7 +103,7 @@ public class MemoryOptimizedHistory extends FaweStreamChangeSet {
         }
         setOrigin(x, z);
         idsStream = new ByteArrayOutputStream(Settings.HISTORY.BUFFER_SIZE);
-        idsStreamZip = getCompressedOS(idsStream);
+        idsStreamZip = getBlockCompressedOS(idsStream);
         idsStreamZip.write(FaweStreamChangeSet.MODE);
         idsStreamZip.writeInt(x);
         idsStreamZip.writeInt(z);
@@ -116,7 +116,8 @@ public class MemoryOptimizedHistory extends FaweStreamChangeSet {
             return null;
         }
         FaweInputStream result = MainUtil.getCompressedIS(new ByteArrayInputStream(ids));
-        result.skip(FaweStreamChangeSet.HEADER_SIZE);
+        setBlockMode(result.read());
+        result.skip(FaweStreamChangeSet.HEADER_SIZE - 1);
         return result;
     }
 
@@ -39,7 +39,7 @@ public class CPUOptimizedClipboard extends FaweClipboard {
 
     public int getId(int index) {
         if (add != null) {
-            return ids[index] & 0xFF + add[index] & 0xFF;
+            return (ids[index] & 0xFF) + ((add[index] & 0xFF) << 8);
         }
         return ids[index] & 0xFF;
     }
@@ -3,12 +3,19 @@ package com.boydti.fawe.object.clipboard;
 import com.boydti.fawe.Fawe;
 import com.boydti.fawe.FaweCache;
 import com.boydti.fawe.config.Settings;
-import com.boydti.fawe.object.BufferedRandomAccessFile;
+import com.boydti.fawe.object.FaweInputStream;
+import com.boydti.fawe.object.FaweOutputStream;
 import com.boydti.fawe.object.IntegerTrio;
 import com.boydti.fawe.object.RunnableVal2;
 import com.boydti.fawe.util.MainUtil;
 import com.boydti.fawe.util.TaskManager;
 import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.DoubleTag;
+import com.sk89q.jnbt.FloatTag;
+import com.sk89q.jnbt.IntTag;
+import com.sk89q.jnbt.ListTag;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.jnbt.Tag;
 import com.sk89q.worldedit.BlockVector;
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.Vector;
@@ -18,22 +25,28 @@ import com.sk89q.worldedit.entity.Entity;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
 import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.util.Location;
 import java.io.Closeable;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
  * A clipboard with disk backed storage. (lower memory + loads on crash)
- *  - Uses an auto closable RandomAccessFile for getting / setting id / data
- *  - I don't know how to reduce nbt / entities to O(2) complexity, so it is stored in memory.
- *
- *  TODO load on join
+ *  - The file is memory mapped (in segments, so it can exceed 2GB) for getting / setting id / data
+ *  - Nbt / entities are kept in memory, and saved to a sidecar file (<file>.nbt) shortly after they change
  */
 public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
 
@@ -41,6 +54,13 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
     public static int MODE = 0;
     public static int HEADER_SIZE = 14;
 
+    /**
+     * Bytes per mapped segment (even, so a block is never split between segments)
+     */
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+    private static final int SEGMENT_MASK = (int) SEGMENT_SIZE - 1;
+
     protected int length;
     protected int height;
     protected int width;
@@ -49,11 +69,12 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
     private final HashMap<IntegerTrio, CompoundTag> nbtMap;
     private final HashSet<ClipboardEntity> entities;
     private final File file;
-    private final byte[] buffer;
+    private final File nbtFile;
 
-    private volatile BufferedRandomAccessFile raf;
-    private long lastAccessed;
-    private int last;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private volatile MappedByteBuffer[] segments;
+    private volatile boolean nbtDirty;
 
     public DiskOptimizedClipboard(int width, int height, int length, UUID uuid) {
         this(width, height, length, MainUtil.getFile(Fawe.imp().getDirectory(), Settings.PATHS.CLIPBOARD + File.separator + uuid + ".bd"));
@@ -61,19 +82,17 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
 
     public DiskOptimizedClipboard(File file) throws IOException {
         nbtMap = new HashMap<>();
-        entities = new HashSet<>();this.buffer = new byte[2];
+        entities = new HashSet<>();
         this.file = file;
-        this.lastAccessed = System.currentTimeMillis();
-        this.raf = new BufferedRandomAccessFile(file, "rw", Settings.HISTORY.BUFFER_SIZE);
-        raf.setLength(file.length());
-        long size = (raf.length() - HEADER_SIZE) >> 1;
-        raf.seek(2);
-        last = -1;
-        width = (int) raf.readChar();
-        height = (int) raf.readChar();
-        length = (int) raf.readChar();
+        this.nbtFile = new File(file.getPath() + ".nbt");
+        this.raf = new RandomAccessFile(file, "rw");
+        this.channel = raf.getChannel();
+        map(raf.length());
+        MappedByteBuffer header = segments[0];
+        width = header.getChar(2);
+        height = header.getChar(4);
+        length = header.getChar(6);
         area = width * length;
-        autoCloseTask();
     }
 
     @Override
@@ -89,16 +108,16 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
                     return true;
                 }
             };
-            if (raf == null) {
+            if (segments == null) {
                 open();
             }
-            raf.seek(8);
-            last = -1;
-            int ox = raf.readShort();
-            int oy = raf.readShort();
-            int oz = raf.readShort();
+            MappedByteBuffer header = segments[0];
+            int ox = header.getShort(8);
+            int oy = header.getShort(10);
+            int oz = header.getShort(12);
             BlockArrayClipboard clipboard = new BlockArrayClipboard(region, this);
             clipboard.setOrigin(new Vector(ox, oy, oz));
+            loadNBT(clipboard);
             return clipboard;
         } catch (IOException e) {
             MainUtil.handleError(e);
@@ -110,8 +129,7 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
         nbtMap = new HashMap<>();
         entities = new HashSet<>();
         this.file = file;
-        this.buffer = new byte[2];
-        this.lastAccessed = System.currentTimeMillis();
+        this.nbtFile = new File(file.getPath() + ".nbt");
         this.width = width;
         this.height = height;
         this.length = length;
@@ -121,6 +139,7 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
                 file.getParentFile().mkdirs();
             }
             file.createNewFile();
+            nbtFile.delete();
         } catch (Exception e) {
             MainUtil.handleError(e);
         }
@@ -129,14 +148,13 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
     @Override
     public void setOrigin(Vector offset) {
         try {
-            if (raf == null) {
+            if (segments == null) {
                 open();
             }
-            raf.seek(8);
-            last = -1;
-            raf.writeShort(offset.getBlockX());
-            raf.writeShort(offset.getBlockY());
-            raf.writeShort(offset.getBlockZ());
+            MappedByteBuffer header = segments[0];
+            header.putShort(8, (short) offset.getBlockX());
+            header.putShort(10, (short) offset.getBlockY());
+            header.putShort(12, (short) offset.getBlockZ());
         } catch (IOException e) {
             MainUtil.handleError(e);
         }
@@ -145,34 +163,21 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
     @Override
     public void setDimensions(Vector dimensions) {
         try {
-            if (raf == null) {
-                open();
-            }
             width = dimensions.getBlockX();
             height = dimensions.getBlockY();
             length = dimensions.getBlockZ();
-            long size = width * height * length * 2l + HEADER_SIZE;
-            raf.setLength(size);
-            raf.seek(2);
-            last = -1;
-            raf.writeChar(width);
-            raf.writeChar(height);
-            raf.writeChar(length);
-            raf.flush();
+            area = width * length;
+            open();
+            writeDimensions();
         } catch (IOException e) {
             MainUtil.handleError(e);
         }
     }
 
     public void flush() {
-        try {
-            raf.close();
-            raf = null;
-            file.setWritable(true);
-            System.gc();
-        } catch (IOException e) {
-            MainUtil.handleError(e);
-        }
+        saveNBT();
+        close();
+        file.setWritable(true);
     }
 
     public DiskOptimizedClipboard(int width, int height, int length) {
@@ -180,10 +185,30 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
     }
 
     public void close() {
+        close(false);
+    }
+
+    /**
+     * @param unmap release the mapping now (required before resizing the file on some platforms), rather than when it is garbage collected
+     */
+    private void close(boolean unmap) {
         try {
-            RandomAccessFile tmp = raf;
-            raf = null;
-            tmp.close();
+            MappedByteBuffer[] tmp = segments;
+            segments = null;
+            if (tmp != null) {
+                for (MappedByteBuffer segment : tmp) {
+                    segment.force();
+                    if (unmap) {
+                        unmap(segment);
+                    }
+                }
+            }
+            if (raf != null) {
+                raf.close();
+                raf = null;
+                channel = null;
+            }
+            // Mapped buffers are only released once garbage collected
             tmp = null;
             System.gc();
         } catch (IOException e) {
@@ -191,58 +216,193 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
         }
     }
 
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Method getCleaner = buffer.getClass().getMethod("cleaner");
+            getCleaner.setAccessible(true);
+            Object cleaner = getCleaner.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Throwable ignore) {}
+    }
+
     public void open() throws IOException {
+        long size = width * height * length * 2l + HEADER_SIZE;
+        if (segments != null && channel != null && channel.size() == size) {
+            return;
+        }
         if (raf != null) {
-            close();
+            close(true);
         }
-        lastAccessed = System.currentTimeMillis();
-        this.raf = new BufferedRandomAccessFile(file, "rw", Settings.HISTORY.BUFFER_SIZE);
-        long size = width * height * length * 2l + HEADER_SIZE;
-        if (raf.length() != size) {
+        this.raf = new RandomAccessFile(file, "rw");
+        this.channel = raf.getChannel();
+        boolean resize = raf.length() != size;
+        if (resize) {
             raf.setLength(size);
-            // write length etc
-            raf.seek(2);
-            last = -1;
-            raf.writeChar(width);
-            raf.writeChar(height);
-            raf.writeChar(length);
         }
-        autoCloseTask();
+        map(size);
+        if (resize) {
+            writeDimensions();
+        }
     }
 
-    private void autoCloseTask() {
+    private void writeDimensions() {
+        MappedByteBuffer header = segments[0];
+        header.putChar(2, (char) width);
+        header.putChar(4, (char) height);
+        header.putChar(6, (char) length);
+    }
+
+    private void map(long size) throws IOException {
+        int count = (int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_BITS);
+        MappedByteBuffer[] mapped = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long start = (long) i << SEGMENT_BITS;
+            mapped[i] = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(SEGMENT_SIZE, size - start));
+        }
+        segments = mapped;
+    }
+
+    private int getCombined(MappedByteBuffer[] segments, int i) {
+        long pos = HEADER_SIZE + ((long) i << 1);
+        return segments[(int) (pos >>> SEGMENT_BITS)].getChar((int) pos & SEGMENT_MASK);
+    }
+
+    private void putCombined(MappedByteBuffer[] segments, int i, int combined) {
+        long pos = HEADER_SIZE + ((long) i << 1);
+        segments[(int) (pos >>> SEGMENT_BITS)].putChar((int) pos & SEGMENT_MASK, (char) combined);
+    }
+
+    private MappedByteBuffer[] getSegments() throws IOException {
+        MappedByteBuffer[] tmp = segments;
+        if (tmp == null) {
+            open();
+            tmp = segments;
+        }
+        return tmp;
+    }
+
+    /**
+     * Save the nbt / entities to the sidecar file soon (so multiple changes are saved together)
+     */
+    private void markNBTDirty() {
+        if (nbtDirty) {
+            return;
+        }
+        nbtDirty = true;
         TaskManager.IMP.laterAsync(new Runnable() {
             @Override
             public void run() {
-                if (raf != null && System.currentTimeMillis() - lastAccessed > 10000) {
-                    close();
-                } else if (raf == null) {
-                    return;
-                } else {
-                    TaskManager.IMP.laterAsync(this, 200);
+                if (nbtDirty) {
+                    saveNBT();
+                }
+            }
+        }, 20);
+    }
+
+    private void saveNBT() {
+        if (!nbtDirty) {
+            return;
+        }
+        nbtDirty = false;
+        ArrayList<Map<String, Object>> tiles = new ArrayList<>();
+        synchronized (nbtMap) {
+            for (Map.Entry<IntegerTrio, CompoundTag> entry : nbtMap.entrySet()) {
+                CompoundTag tag = entry.getValue();
+                if (tag != null) {
+                    IntegerTrio pos = entry.getKey();
+                    tiles.add(FaweCache.asMap("pos", Arrays.asList(pos.x, pos.y, pos.z), "nbt", tag));
+                }
+            }
+        }
+        ArrayList<Map<String, Object>> ents = new ArrayList<>();
+        for (ClipboardEntity entity : getEntities()) {
+            Location loc = entity.getLocation();
+            BaseEntity state = entity.getState();
+            Map<String, Object> map = FaweCache.asMap("id", state.getTypeId(), "pos", Arrays.asList(loc.getX(), loc.getY(), loc.getZ()), "rotation", Arrays.asList(loc.getYaw(), loc.getPitch()));
+            CompoundTag nbt = state.getNbtData();
+            if (nbt != null) {
+                map.put("nbt", nbt);
+            }
+            ents.add(map);
+        }
+        if (tiles.isEmpty() && ents.isEmpty()) {
+            nbtFile.delete();
+            return;
+        }
+        Map<String, Object> root = new HashMap<>();
+        if (!tiles.isEmpty()) {
+            root.put("tiles", tiles);
+        }
+        if (!ents.isEmpty()) {
+            root.put("entities", ents);
+        }
+        File tmp = new File(nbtFile.getPath() + ".tmp");
+        try (FaweOutputStream out = MainUtil.getCompressedOS(new FileOutputStream(tmp))) {
+            out.writeNBT("", FaweCache.asTag(root));
+        } catch (IOException e) {
+            MainUtil.handleError(e);
+            return;
+        }
+        nbtFile.delete();
+        tmp.renameTo(nbtFile);
+    }
+
+    /**
+     * Load the nbt / entities saved in the sidecar file
+     * @param extent
+     */
+    private void loadNBT(Extent extent) {
+        if (!nbtFile.exists()) {
+            return;
+        }
+        try (FaweInputStream in = MainUtil.getCompressedIS(new FileInputStream(nbtFile))) {
+            Map<String, Tag> root = ((CompoundTag) in.readNBT().getTag()).getValue();
+            ListTag tiles = (ListTag) root.get("tiles");
+            if (tiles != null) {
+                synchronized (nbtMap) {
+                    for (Tag tag : tiles.getValue()) {
+                        Map<String, Tag> tile = ((CompoundTag) tag).getValue();
+                        List<Tag> pos = ((ListTag) tile.get("pos")).getValue();
+                        IntegerTrio trio = new IntegerTrio(((IntTag) pos.get(0)).getValue(), ((IntTag) pos.get(1)).getValue(), ((IntTag) pos.get(2)).getValue());
+                        nbtMap.put(trio, (CompoundTag) tile.get("nbt"));
+                    }
                 }
             }
-        }, 200);
+            ListTag ents = (ListTag) root.get("entities");
+            if (ents != null) {
+                for (Tag tag : ents.getValue()) {
+                    Map<String, Tag> ent = ((CompoundTag) tag).getValue();
+                    List<Tag> pos = ((ListTag) ent.get("pos")).getValue();
+                    List<Tag> rotation = ((ListTag) ent.get("rotation")).getValue();
+                    BaseEntity state = new BaseEntity(((StringTag) ent.get("id")).getValue(), (CompoundTag) ent.get("nbt"));
+                    synchronized (entities) {
+                        entities.add(new ClipboardEntity(extent, ((DoubleTag) pos.get(0)).getValue(), ((DoubleTag) pos.get(1)).getValue(), ((DoubleTag) pos.get(2)).getValue(), ((FloatTag) rotation.get(0)).getValue(), ((FloatTag) rotation.get(1)).getValue(), state));
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            MainUtil.handleError(e);
+        }
     }
 
-    private int ylast;
-    private int ylasti;
-    private int zlast;
-    private int zlasti;
+    private CompoundTag getTile(int x, int y, int z) {
+        synchronized (nbtMap) {
+            return nbtMap.get(new IntegerTrio(x, y, z));
+        }
+    }
 
     @Override
     public void forEach(final RunnableVal2<Vector,BaseBlock> task, boolean air) {
         try {
-            if (raf == null) {
-                open();
-            }
-            raf.seek(HEADER_SIZE);
+            MappedByteBuffer[] segments = getSegments();
             BlockVector pos = new BlockVector(0, 0, 0);
             int x = 0;
             int y = 0;
             int z = 0;
-            long len = (raf.length());
-            for (long i = HEADER_SIZE; i < len; i+=2) {
+            int volume = area * height;
+            for (int i = 0; i < volume; i++) {
                 pos.x = x;
                 pos.y = y;
                 pos.z = z;
@@ -253,14 +413,13 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
                         ++y;
                     }
                 }
-                raf.seek(i);
-                int combinedId = raf.readChar();
+                int combinedId = getCombined(segments, i);
                 if (combinedId == 0 && !air) {
                     continue;
                 }
                 BaseBlock block = FaweCache.CACHE_BLOCK[combinedId];
                 if (FaweCache.hasNBT(block.getId())) {
-                    CompoundTag nbt = nbtMap.get(new IntegerTrio((int) pos.x, (int) pos.y, (int) pos.z));
+                    CompoundTag nbt = getTile((int) pos.x, (int) pos.y, (int) pos.z);
                     if (nbt != null) {
                         block = new BaseBlock(block.getId(), block.getData());
                         block.setNbtData(nbt);
@@ -276,19 +435,11 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
     @Override
     public BaseBlock getBlock(int x, int y, int z) {
         try {
-            if (raf == null) {
-                open();
-            }
-            int i = x + ((ylast == y) ? ylasti : (ylasti = ((ylast = y)) * area)) + ((zlast == z) ? zlasti : (zlasti = (zlast = z) * width));
-            if (i != last + 1) {
-                raf.seek((HEADER_SIZE) + (i << 1));
-                lastAccessed = System.currentTimeMillis();
-            }
-            last = i;
-            int combinedId = raf.readChar();
+            int i = x + y * area + z * width;
+            int combinedId = getCombined(getSegments(), i);
             BaseBlock block = FaweCache.CACHE_BLOCK[combinedId];
             if (FaweCache.hasNBT(block.getId())) {
-                CompoundTag nbt = nbtMap.get(new IntegerTrio(x, y, z));
+                CompoundTag nbt = getTile(x, y, z);
                 if (nbt != null) {
                     block = new BaseBlock(block.getId(), block.getData());
                     block.setNbtData(nbt);
@@ -303,28 +454,23 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
 
     @Override
     public boolean setTile(int x, int y, int z, CompoundTag tag) {
-        nbtMap.put(new IntegerTrio(x, y, z), tag);
+        synchronized (nbtMap) {
+            nbtMap.put(new IntegerTrio(x, y, z), tag);
+        }
+        markNBTDirty();
         return true;
     }
 
     @Override
     public boolean setBlock(int x, int y, int z, BaseBlock block) {
         try {
-            if (raf == null) {
-                open();
-            }
-            int i = x + ((ylast == y) ? ylasti : (ylasti = ((ylast = y)) * area)) + ((zlast == z) ? zlasti : (zlasti = (zlast = z) * width));
-            if (i != last + 1) {
-                raf.seek((HEADER_SIZE) + (i << 1));
-                lastAccessed = System.currentTimeMillis();
-            }
-            last = i;
+            int i = x + y * area + z * width;
             final int id = block.getId();
             final int data = block.getData();
             int combined = (id << 4) + data;
-            raf.writeChar(combined);
+            putCombined(getSegments(), i, combined);
             if (FaweCache.hasNBT(id)) {
-                nbtMap.put(new IntegerTrio(x, y, z), block.getNbtData());
+                setTile(x, y, z, block.getNbtData());
             }
             return true;
         }  catch (Exception e) {
@@ -336,17 +482,10 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
     @Override
     public void setId(int i, int id) {
         try {
-            if (raf == null) {
-                open();
-            }
-            if (i != last + 1) {
-                raf.seek((HEADER_SIZE) + (i << 1));
-                lastAccessed = System.currentTimeMillis();
-            }
-            last = i;
-            int combined = FaweCache.getData(raf.readChar()) + (id << 4);
-            raf.seekUnsafe(raf.getFilePointer() - 2);
-            raf.writeChar(combined);
+            MappedByteBuffer[] segments = getSegments();
+            // Keep the add bits, which may have been set first
+            int combined = (getCombined(segments, i) & 0xF00F) | ((id & 0xFF) << 4);
+            putCombined(segments, i, combined);
         }  catch (Exception e) {
             MainUtil.handleError(e);
         }
@@ -354,15 +493,7 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
 
     public void setCombined(int i, int combined) {
         try {
-            if (raf == null) {
-                open();
-            }
-            if (i != last + 1) {
-                raf.seek((HEADER_SIZE) + (i << 1));
-                lastAccessed = System.currentTimeMillis();
-            }
-            last = i;
-            raf.writeChar(combined);
+            putCombined(getSegments(), i, combined);
         }  catch (Exception e) {
             MainUtil.handleError(e);
         }
@@ -371,17 +502,9 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
     @Override
     public void setAdd(int i, int add) {
         try {
-            if (raf == null) {
-                open();
-            }
-            if (i != last + 1) {
-                raf.seek((HEADER_SIZE) + (i << 1));
-                lastAccessed = System.currentTimeMillis();
-            }
-            last = i;
-            int combined = raf.readChar() + (add << 4);
-            raf.seekUnsafe(raf.getFilePointer() - 2);
-            raf.writeChar(combined);
+            MappedByteBuffer[] segments = getSegments();
+            int combined = (getCombined(segments, i) & 0x0FFF) | (add << 12);
+            putCombined(segments, i, combined);
         }  catch (Exception e) {
             MainUtil.handleError(e);
         }
@@ -390,17 +513,51 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
     @Override
     public void setData(int i, int data) {
         try {
-            if (raf == null) {
-                open();
+            MappedByteBuffer[] segments = getSegments();
+            int combined = (getCombined(segments, i) & 0xFFF0) | (data & 0xF);
+            putCombined(segments, i, combined);
+        }  catch (Exception e) {
+            MainUtil.handleError(e);
+        }
+    }
+
+    /**
+     * Absolute puts on the mapped segments are safe from multiple threads, so long as the runs don't overlap
+     */
+    @Override
+    public void setIds(int index, byte[] ids, int offset, int length) {
+        try {
+            MappedByteBuffer[] segments = getSegments();
+            for (int i = offset, end = offset + length; i < end; i++, index++) {
+                putCombined(segments, index, (getCombined(segments, index) & 0xF00F) | ((ids[i] & 0xFF) << 4));
             }
-            if (i != last + 1) {
-                raf.seek((HEADER_SIZE) + (i << 1));
-                lastAccessed = System.currentTimeMillis();
+        }  catch (Exception e) {
+            MainUtil.handleError(e);
+        }
+    }
+
+    @Override
+    public void setDatas(int index, byte[] datas, int offset, int length) {
+        try {
+            MappedByteBuffer[] segments = getSegments();
+            for (int i = offset, end = offset + length; i < end; i++, index++) {
+                putCombined(segments, index, (getCombined(segments, index) & 0xFFF0) | (datas[i] & 0xF));
+            }
+        }  catch (Exception e) {
+            MainUtil.handleError(e);
+        }
+    }
+
+    @Override
+    public void setAdds(int index, byte[] adds, int offset, int length) {
+        try {
+            MappedByteBuffer[] segments = getSegments();
+            for (int i = offset, end = offset + length; i < end; i++, index++) {
+                int add = adds[i] & 0xF;
+                if (add != 0) {
+                    putCombined(segments, index, (getCombined(segments, index) & 0x0FFF) | (add << 12));
+                }
             }
-            last = i;
-            int combined = (FaweCache.getId(raf.readChar()) << 4) + data;
-            raf.seekUnsafe(raf.getFilePointer() - 2);
-            raf.writeChar(combined);
         }  catch (Exception e) {
             MainUtil.handleError(e);
         }
@@ -409,17 +566,29 @@ public class DiskOptimizedClipboard extends FaweClipboard implements Closeable {
     @Override
     public Entity createEntity(Extent world, double x, double y, double z, float yaw, float pitch, BaseEntity entity) {
         FaweClipboard.ClipboardEntity ret = new ClipboardEntity(world, x, y, z, yaw, pitch, entity);
-        entities.add(ret);
+        synchronized (entities) {
+            entities.add(ret);
+        }
+        markNBTDirty();
         return ret;
     }
 
     @Override
-    public List<? extends Entity> getEntities() {
-        return new ArrayList<>(entities);
+    public List<ClipboardEntity> getEntities() {
+        synchronized (entities) {
+            return new ArrayList<>(entities);
+        }
     }
 
     @Override
     public boolean remove(ClipboardEntity clipboardEntity) {
-        return entities.remove(clipboardEntity);
+        boolean removed;
+        synchronized (entities) {
+            removed = entities.remove(clipboardEntity);
+        }
+        if (removed) {
+            markNBTDirty();
+        }
+        return removed;
     }
 }
@@ -25,6 +25,39 @@ public abstract class FaweClipboard {
 
     public abstract void setAdd(int index, int id);
 
+    /**
+     * Set a run of ids starting at an index (the bytes are unsigned)
+     * @param index
+     * @param ids
+     * @param offset
+     * @param length
+     */
+    public void setIds(int index, byte[] ids, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            setId(index++, ids[i] & 0xFF);
+        }
+    }
+
+    /**
+     * Set a run of data values starting at an index
+     * @see #setIds(int, byte[], int, int)
+     */
+    public void setDatas(int index, byte[] datas, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            setData(index++, datas[i] & 0xFF);
+        }
+    }
+
+    /**
+     * Set a run of add values (the bits above 255 of each id, not nibble packed) starting at an index
+     * @see #setIds(int, byte[], int, int)
+     */
+    public void setAdds(int index, byte[] adds, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            setAdd(index++, adds[i] & 0xFF);
+        }
+    }
+
     public abstract boolean setTile(int x, int y, int z, CompoundTag tag);
 
     public abstract Entity createEntity(Extent world, double x, double y, double z, float yaw, float pitch, BaseEntity entity);
@@ -76,7 +76,7 @@ public class MemoryOptimizedClipboard extends FaweClipboard {
             if (add == null) {
                 return lastIds[index & BLOCK_MASK] & 0xFF;
             } else {
-                return lastIds[index & BLOCK_MASK] & 0xFF + getAdd(index);
+                return (lastIds[index & BLOCK_MASK] & 0xFF) + (getAdd(index) << 8);
             }
         }
         saveIds();
@@ -89,7 +89,7 @@ public class MemoryOptimizedClipboard extends FaweClipboard {
         if (add == null) {
             return lastIds[index & BLOCK_MASK] & 0xFF;
         } else {
-            return lastIds[index & BLOCK_MASK] & 0xFF + getAdd(index);
+            return (lastIds[index & BLOCK_MASK] & 0xFF) + (getAdd(index) << 8);
         }
     }
 
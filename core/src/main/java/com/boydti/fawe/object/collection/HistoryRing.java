@@ -0,0 +1,166 @@
+package com.boydti.fawe.object.collection;
+
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+
+/**
+ * An array backed ring of history entries, oldest first (thread safe)<br>
+ *  - Getting an entry, and adding or removing one at either end is O(1)<br>
+ *  - Entries added by id are only loaded when first needed, then softly referenced (so they can be loaded again)<br>
+ *  - The size of each entry is recorded when it is added, so removing an entry never has to load it
+ */
+public abstract class HistoryRing<T> {
+
+    /**
+     * The entry (if added directly), a SoftReference to it (if added by id and loaded) or null
+     */
+    private Object[] values;
+    /**
+     * The id of each entry, or -1 if it was added directly
+     */
+    private int[] ids;
+    private long[] sizes;
+    private int head;
+    private int size;
+    private long totalSize;
+
+    public HistoryRing() {
+        this.values = new Object[16];
+        this.ids = new int[16];
+        this.sizes = new long[16];
+    }
+
+    /**
+     * Load an entry which was added by id
+     * @param id
+     * @return
+     */
+    protected abstract T load(int id);
+
+    /**
+     * Add the newest entry
+     * @param value
+     * @param size the size to record for the entry
+     */
+    public synchronized void add(T value, long size) {
+        set(slot(this.size), value, -1, size);
+    }
+
+    /**
+     * Add the newest entry, which is loaded when it is first needed
+     * @param id
+     * @param size the size to record for the entry
+     */
+    public synchronized void addId(int id, long size) {
+        set(slot(this.size), null, id, size);
+    }
+
+    /**
+     * Add the oldest entry
+     * @param value
+     * @param size the size to record for the entry
+     */
+    public synchronized void addFirst(T value, long size) {
+        grow();
+        head = (head - 1) & (values.length - 1);
+        set(head, value, -1, size);
+    }
+
+    private int slot(int index) {
+        grow();
+        return (head + index) & (values.length - 1);
+    }
+
+    private void set(int slot, T value, int id, long size) {
+        values[slot] = value;
+        ids[slot] = id;
+        sizes[slot] = size;
+        this.size++;
+        this.totalSize += size;
+    }
+
+    private void grow() {
+        if (size < values.length) {
+            return;
+        }
+        int length = values.length << 1;
+        Object[] newValues = new Object[length];
+        int[] newIds = new int[length];
+        long[] newSizes = new long[length];
+        for (int i = 0; i < size; i++) {
+            int slot = (head + i) & (values.length - 1);
+            newValues[i] = values[slot];
+            newIds[i] = ids[slot];
+            newSizes[i] = sizes[slot];
+        }
+        values = newValues;
+        ids = newIds;
+        sizes = newSizes;
+        head = 0;
+    }
+
+    /**
+     * @param index 0 is the oldest entry
+     * @return
+     */
+    public synchronized T get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index + " (size: " + size + ")");
+        }
+        int slot = (head + index) & (values.length - 1);
+        Object value = values[slot];
+        if (ids[slot] == -1) {
+            return (T) value;
+        }
+        T loaded = value != null ? ((SoftReference<T>) value).get() : null;
+        if (loaded == null) {
+            loaded = load(ids[slot]);
+            values[slot] = new SoftReference<>(loaded);
+        }
+        return loaded;
+    }
+
+    /**
+     * Remove the oldest entry (without loading it)
+     */
+    public synchronized void removeFirst() {
+        if (size == 0) {
+            return;
+        }
+        totalSize -= sizes[head];
+        values[head] = null;
+        head = (head + 1) & (values.length - 1);
+        size--;
+    }
+
+    /**
+     * Remove the newest entries, until there are at most a number of entries left (without loading them)
+     * @param newSize
+     */
+    public synchronized void truncate(int newSize) {
+        while (size > Math.max(0, newSize)) {
+            int slot = (head + size - 1) & (values.length - 1);
+            totalSize -= sizes[slot];
+            values[slot] = null;
+            size--;
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return the sum of the recorded sizes
+     */
+    public synchronized long getTotalSize() {
+        return totalSize;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(values, null);
+        head = 0;
+        size = 0;
+        totalSize = 0;
+    }
+}
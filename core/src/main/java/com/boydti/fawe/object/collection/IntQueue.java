@@ -0,0 +1,69 @@
+package com.boydti.fawe.object.collection;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A growable FIFO queue of primitive ints (not thread safe)
+ */
+public class IntQueue {
+
+    private int[] values;
+    private int head;
+    private int size;
+
+    public IntQueue() {
+        this(16);
+    }
+
+    public IntQueue(int capacity) {
+        int length = 1;
+        while (length < capacity) {
+            length <<= 1;
+        }
+        this.values = new int[length];
+    }
+
+    public void add(int value) {
+        if (size == values.length) {
+            grow();
+        }
+        values[(head + size++) & (values.length - 1)] = value;
+    }
+
+    /**
+     * Remove the first value
+     * @return
+     * @throws NoSuchElementException if empty
+     */
+    public int poll() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        int value = values[head];
+        head = (head + 1) & (values.length - 1);
+        size--;
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    private void grow() {
+        int[] grown = new int[values.length << 1];
+        int first = Math.min(size, values.length - head);
+        System.arraycopy(values, head, grown, 0, first);
+        System.arraycopy(values, 0, grown, first, size - first);
+        values = grown;
+        head = 0;
+    }
+}
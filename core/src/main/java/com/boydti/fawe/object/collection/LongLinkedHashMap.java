@@ -0,0 +1,293 @@
+package com.boydti.fawe.object.collection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A thread safe open addressing map with primitive long keys<br>
+ *  - Iterates / polls in insertion order<br>
+ *  - Keys are never boxed (e.g. use MathMan.pairInt(cx, cz) for chunks)<br>
+ *  - All modifications use a single lock, size() and isEmpty() do not lock<br>
+ *  - get() does not lock when the key is found, as slots are read and written atomically (AtomicReferenceArray) and an
+ *  entry never changes once added. A miss is checked again with the lock, since removing a key may briefly shift another
+ *  key back past a reader
+ * @param <V>
+ */
+public class LongLinkedHashMap<V> {
+
+    /**
+     * Create a value for a key which is not in the map
+     * @param <V>
+     */
+    public interface Factory<V> {
+        V create(long key);
+    }
+
+    private static final class Entry<V> {
+        private final long key;
+        private final V value;
+        private Entry<V> before;
+        private Entry<V> after;
+
+        private Entry(long key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private volatile AtomicReferenceArray<Entry<V>> table;
+    private Entry<V> head;
+    private Entry<V> tail;
+    private volatile int size;
+
+    public LongLinkedHashMap() {
+        this(16);
+    }
+
+    public LongLinkedHashMap(int expected) {
+        int capacity = 16;
+        while (capacity < expected << 1) {
+            capacity <<= 1;
+        }
+        this.table = new AtomicReferenceArray<>(capacity);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Get the slot containing the key, or -1
+     */
+    private int indexOf(long key) {
+        AtomicReferenceArray<Entry<V>> tab = table;
+        int mask = tab.length() - 1;
+        for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+            Entry<V> entry = tab.get(i);
+            if (entry == null) {
+                return -1;
+            }
+            if (entry.key == key) {
+                return i;
+            }
+        }
+    }
+
+    public V get(long key) {
+        AtomicReferenceArray<Entry<V>> tab = table;
+        int mask = tab.length() - 1;
+        for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+            Entry<V> entry = tab.get(i);
+            if (entry == null) {
+                return getLocked(key);
+            }
+            if (entry.key == key) {
+                return entry.value;
+            }
+        }
+    }
+
+    private synchronized V getLocked(long key) {
+        int index = indexOf(key);
+        return index == -1 ? null : table.get(index).value;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Get the value for a key, or create and add it if absent
+     * @param key
+     * @param factory - called at most once, while holding the lock
+     * @return the existing or created value
+     */
+    public synchronized V computeIfAbsent(long key, Factory<V> factory) {
+        AtomicReferenceArray<Entry<V>> tab = table;
+        int mask = tab.length() - 1;
+        int i = hash(key) & mask;
+        for (;; i = (i + 1) & mask) {
+            Entry<V> entry = tab.get(i);
+            if (entry == null) {
+                break;
+            }
+            if (entry.key == key) {
+                return entry.value;
+            }
+        }
+        V value = factory.create(key);
+        if (value != null) {
+            insert(i, key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Add a value if there is no existing value for that key
+     * @param key
+     * @param value
+     * @return the existing value, or null if it was added
+     */
+    public synchronized V putIfAbsent(long key, V value) {
+        AtomicReferenceArray<Entry<V>> tab = table;
+        int mask = tab.length() - 1;
+        int i = hash(key) & mask;
+        for (;; i = (i + 1) & mask) {
+            Entry<V> entry = tab.get(i);
+            if (entry == null) {
+                break;
+            }
+            if (entry.key == key) {
+                return entry.value;
+            }
+        }
+        insert(i, key, value);
+        return null;
+    }
+
+    /**
+     * Add a value, replacing any existing value<br>
+     *  - The value is moved to the end of the iteration order
+     * @param key
+     * @param value
+     * @return the previous value or null
+     */
+    public synchronized V put(long key, V value) {
+        V previous = remove(key);
+        putIfAbsent(key, value);
+        return previous;
+    }
+
+    public synchronized V remove(long key) {
+        int index = indexOf(key);
+        if (index == -1) {
+            return null;
+        }
+        Entry<V> entry = table.get(index);
+        removeAt(index);
+        unlink(entry);
+        return entry.value;
+    }
+
+    /**
+     * Remove the eldest value
+     * @return the value or null if empty
+     */
+    public synchronized V poll() {
+        Entry<V> entry = head;
+        if (entry == null) {
+            return null;
+        }
+        removeAt(indexOf(entry.key));
+        unlink(entry);
+        return entry.value;
+    }
+
+    /**
+     * Get the eldest value without removing it
+     * @return the value or null if empty
+     */
+    public synchronized V peek() {
+        Entry<V> entry = head;
+        return entry == null ? null : entry.value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public synchronized void clear() {
+        table = new AtomicReferenceArray<>(table.length());
+        head = null;
+        tail = null;
+        size = 0;
+    }
+
+    /**
+     * Get a snapshot of the values in insertion order
+     * @return
+     */
+    public synchronized List<V> values() {
+        ArrayList<V> list = new ArrayList<V>(size);
+        for (Entry<V> entry = head; entry != null; entry = entry.after) {
+            list.add(entry.value);
+        }
+        return list;
+    }
+
+    private void insert(int index, long key, V value) {
+        Entry<V> entry = new Entry<V>(key, value);
+        table.set(index, entry);
+        if (tail == null) {
+            head = entry;
+        } else {
+            tail.after = entry;
+            entry.before = tail;
+        }
+        tail = entry;
+        if (++size << 1 > table.length()) {
+            resize(table.length() << 1);
+        }
+    }
+
+    private void unlink(Entry<V> entry) {
+        if (entry.before == null) {
+            head = entry.after;
+        } else {
+            entry.before.after = entry.after;
+        }
+        if (entry.after == null) {
+            tail = entry.before;
+        } else {
+            entry.after.before = entry.before;
+        }
+        entry.before = null;
+        entry.after = null;
+        size--;
+    }
+
+    /**
+     * Clear a slot, shifting back any following entries which probed past it
+     */
+    private void removeAt(int index) {
+        AtomicReferenceArray<Entry<V>> tab = table;
+        int mask = tab.length() - 1;
+        tab.set(index, null);
+        int i = index;
+        int j = index;
+        while (true) {
+            j = (j + 1) & mask;
+            Entry<V> entry = tab.get(j);
+            if (entry == null) {
+                return;
+            }
+            int k = hash(entry.key) & mask;
+            if (i <= j ? (i < k && k <= j) : (i < k || k <= j)) {
+                continue;
+            }
+            tab.set(i, entry);
+            tab.set(j, null);
+            i = j;
+        }
+    }
+
+    private void resize(int capacity) {
+        AtomicReferenceArray<Entry<V>> tab = new AtomicReferenceArray<>(capacity);
+        int mask = capacity - 1;
+        for (Entry<V> entry = head; entry != null; entry = entry.after) {
+            int i = hash(entry.key) & mask;
+            while (tab.get(i) != null) {
+                i = (i + 1) & mask;
+            }
+            // Published by the volatile write to table
+            tab.lazySet(i, entry);
+        }
+        table = tab;
+    }
+}
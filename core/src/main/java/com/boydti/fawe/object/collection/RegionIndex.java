@@ -0,0 +1,108 @@
+package com.boydti.fawe.object.collection;
+
+import com.boydti.fawe.object.RegionWrapper;
+import com.boydti.fawe.util.MathMan;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A per chunk index of a region mask, so most checks are a single lookup (thread safe)<br>
+ *  - Each chunk has a cached verdict: fully allowed (inside one region), fully denied (outside every region) or partial<br>
+ *  - Partial chunks only check the regions which overlap them
+ */
+public class RegionIndex {
+
+    private static final RegionWrapper[] ALLOWED = new RegionWrapper[0];
+    private static final RegionWrapper[] DENIED = new RegionWrapper[0];
+
+    /**
+     * The most chunk verdicts to keep before starting again
+     */
+    private static final int MAX_CHUNKS = 65536;
+
+    private final RegionWrapper[] regions;
+    private final ConcurrentHashMap<Long, RegionWrapper[]> chunks = new ConcurrentHashMap<>();
+    private volatile Verdict last;
+
+    private static final class Verdict {
+        private final int cx;
+        private final int cz;
+        private final RegionWrapper[] regions;
+
+        private Verdict(int cx, int cz, RegionWrapper[] regions) {
+            this.cx = cx;
+            this.cz = cz;
+            this.regions = regions;
+        }
+    }
+
+    public RegionIndex(RegionWrapper[] regions) {
+        this.regions = regions;
+    }
+
+    public RegionWrapper[] getRegions() {
+        return regions;
+    }
+
+    public boolean contains(int x, int z) {
+        switch (regions.length) {
+            case 0:
+                return false;
+            case 1:
+                return regions[0].isIn(x, z);
+        }
+        int cx = x >> 4;
+        int cz = z >> 4;
+        Verdict verdict = last;
+        if (verdict == null || verdict.cx != cx || verdict.cz != cz) {
+            last = verdict = new Verdict(cx, cz, getChunk(cx, cz));
+        }
+        RegionWrapper[] overlapping = verdict.regions;
+        if (overlapping == ALLOWED) {
+            return true;
+        }
+        for (RegionWrapper region : overlapping) {
+            if (region.isIn(x, z)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private RegionWrapper[] getChunk(int cx, int cz) {
+        long pair = MathMan.pairInt(cx, cz);
+        RegionWrapper[] overlapping = chunks.get(pair);
+        if (overlapping == null) {
+            overlapping = compute(cx, cz);
+            if (chunks.size() >= MAX_CHUNKS) {
+                chunks.clear();
+            }
+            chunks.put(pair, overlapping);
+        }
+        return overlapping;
+    }
+
+    private RegionWrapper[] compute(int cx, int cz) {
+        int minX = cx << 4;
+        int minZ = cz << 4;
+        int maxX = minX + 15;
+        int maxZ = minZ + 15;
+        ArrayList<RegionWrapper> overlapping = null;
+        for (RegionWrapper region : regions) {
+            if (region.minX > maxX || region.maxX < minX || region.minZ > maxZ || region.maxZ < minZ) {
+                continue;
+            }
+            if (region.minX <= minX && region.maxX >= maxX && region.minZ <= minZ && region.maxZ >= maxZ) {
+                return ALLOWED;
+            }
+            if (overlapping == null) {
+                overlapping = new ArrayList<>();
+            }
+            overlapping.add(region);
+        }
+        if (overlapping == null) {
+            return DENIED;
+        }
+        return overlapping.toArray(new RegionWrapper[overlapping.size()]);
+    }
+}
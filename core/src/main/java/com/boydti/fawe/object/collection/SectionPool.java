@@ -0,0 +1,114 @@
+package com.boydti.fawe.object.collection;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of char[4096] section arrays<br>
+ *  - Each thread keeps a small cache, with the remainder shared<br>
+ *  - Borrowed arrays are always zeroed
+ */
+public class SectionPool {
+
+    public static final int SECTION_SIZE = 4096;
+
+    /**
+     * Max arrays per thread / shared (each array is 8KB)
+     */
+    private static final int LOCAL_SIZE = 64;
+    private static final int SHARED_SIZE = 4096;
+
+    private static final ConcurrentLinkedQueue<char[]> shared = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger sharedSize = new AtomicInteger();
+
+    /**
+     * Incremented by clear(), so each thread drops its cache the next time it uses the pool
+     */
+    private static volatile int generation;
+
+    private static final class LocalCache extends ArrayDeque<char[]> {
+        private int generation = SectionPool.generation;
+
+        private LocalCache() {
+            super(LOCAL_SIZE);
+        }
+    }
+
+    private static final ThreadLocal<LocalCache> local = new ThreadLocal<LocalCache>() {
+        @Override
+        protected LocalCache initialValue() {
+            return new LocalCache();
+        }
+    };
+
+    private static LocalCache getLocal() {
+        LocalCache cache = local.get();
+        int current = generation;
+        if (cache.generation != current) {
+            cache.clear();
+            cache.generation = current;
+        }
+        return cache;
+    }
+
+    /**
+     * Get an empty section array
+     * @return
+     */
+    public static char[] borrow() {
+        char[] array = getLocal().poll();
+        if (array != null) {
+            return array;
+        }
+        array = shared.poll();
+        if (array != null) {
+            sharedSize.decrementAndGet();
+            return array;
+        }
+        return new char[SECTION_SIZE];
+    }
+
+    /**
+     * Get a copy of a section array
+     * @param array
+     * @return
+     */
+    public static char[] copy(char[] array) {
+        char[] copy = borrow();
+        System.arraycopy(array, 0, copy, 0, SECTION_SIZE);
+        return copy;
+    }
+
+    /**
+     * Return an array to the pool<br>
+     *  - The array must not be used afterwards
+     * @param array
+     */
+    public static void release(char[] array) {
+        if (array == null || array.length != SECTION_SIZE) {
+            return;
+        }
+        Arrays.fill(array, (char) 0);
+        ArrayDeque<char[]> cache = getLocal();
+        if (cache.size() < LOCAL_SIZE) {
+            cache.add(array);
+        } else if (sharedSize.incrementAndGet() <= SHARED_SIZE) {
+            shared.add(array);
+        } else {
+            sharedSize.decrementAndGet();
+        }
+    }
+
+    /**
+     * Clear all pooled arrays (e.g. when low on memory)<br>
+     *  - Other threads drop their cache the next time they use the pool
+     */
+    public static void clear() {
+        generation++;
+        local.get().clear();
+        shared.clear();
+        sharedSize.set(0);
+    }
+}
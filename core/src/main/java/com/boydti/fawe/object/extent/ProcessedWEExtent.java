@@ -4,6 +4,7 @@ import com.boydti.fawe.FaweCache;
 import com.boydti.fawe.config.BBC;
 import com.boydti.fawe.object.FaweLimit;
 import com.boydti.fawe.object.RegionWrapper;
+import com.boydti.fawe.object.collection.RegionIndex;
 import com.boydti.fawe.util.WEManager;
 import com.sk89q.worldedit.BlockVector;
 import com.sk89q.worldedit.Vector;
@@ -20,11 +21,11 @@ import java.util.List;
 
 public class ProcessedWEExtent extends FaweRegionExtent {
     private final FaweLimit limit;
-    private final RegionWrapper[] mask;
+    private final RegionIndex mask;
 
     public ProcessedWEExtent(final Extent parent, final RegionWrapper[] mask, FaweLimit limit) {
         super(parent);
-        this.mask = mask;
+        this.mask = new RegionIndex(mask);
         this.limit = limit;
     }
 
@@ -33,7 +34,7 @@ public class ProcessedWEExtent extends FaweRegionExtent {
         if (entity == null) {
             return null;
         }
-        if (WEManager.IMP.maskContains(this.mask, location.getBlockX(), location.getBlockZ())) {
+        if (this.mask.contains(location.getBlockX(), location.getBlockZ())) {
             if (!limit.MAX_ENTITIES()) {
                 WEManager.IMP.cancelEditSafe(this, BBC.WORLDEDIT_CANCEL_REASON_MAX_CHANGES);
                 return null;
@@ -81,7 +82,7 @@ public class ProcessedWEExtent extends FaweRegionExtent {
                 return false;
             }
         }
-        if (WEManager.IMP.maskContains(this.mask, (int) location.x, (int) location.z)) {
+        if (this.mask.contains((int) location.x, (int) location.z)) {
             if (!limit.MAX_CHANGES()) {
                 WEManager.IMP.cancelEdit(this, BBC.WORLDEDIT_CANCEL_REASON_MAX_CHANGES);
                 return false;
@@ -100,6 +101,6 @@ public class ProcessedWEExtent extends FaweRegionExtent {
 
     @Override
     public boolean contains(int x, int y, int z) {
-        return WEManager.IMP.maskContains(this.mask, x, z);
+        return this.mask.contains(x, z);
     }
 }
@@ -0,0 +1,116 @@
+package com.boydti.fawe.object.io;
+
+import com.boydti.fawe.config.Settings;
+import com.boydti.fawe.util.MainUtil;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Read a stream written by a ParallelCompressedOutputStream<br>
+ *  - The next few frames are decompressed ahead on the compression pool
+ */
+public class ParallelCompressedInputStream extends InputStream {
+
+    private final DataInputStream in;
+    private final int maxPending;
+    private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+    private boolean ended;
+
+    private byte[] buffer;
+    private int index;
+
+    public ParallelCompressedInputStream(InputStream in) {
+        this.in = new DataInputStream(in);
+        this.maxPending = Math.max(2, Settings.QUEUE.PARALLEL_THREADS << 1);
+    }
+
+    /**
+     * Queue up frames to decompress
+     */
+    private void readAhead() throws IOException {
+        while (!ended && pending.size() < maxPending) {
+            final int rawLength = in.readInt();
+            if (rawLength <= 0) {
+                ended = true;
+                return;
+            }
+            final byte[] compressed = new byte[in.readInt()];
+            in.readFully(compressed);
+            pending.add(ParallelCompressedOutputStream.getPool().submit(new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws Exception {
+                    byte[] raw = new byte[rawLength];
+                    try (DataInputStream is = new DataInputStream(MainUtil.getCompressedIS(new ByteArrayInputStream(compressed), Math.min(compressed.length, rawLength) + 1))) {
+                        is.readFully(raw);
+                    }
+                    return raw;
+                }
+            }));
+        }
+    }
+
+    /**
+     * @return if there is anything left to read
+     */
+    private boolean next() throws IOException {
+        if (buffer != null && index < buffer.length) {
+            return true;
+        }
+        readAhead();
+        Future<byte[]> future = pending.poll();
+        if (future == null) {
+            buffer = null;
+            return false;
+        }
+        try {
+            buffer = future.get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IOException(e);
+        }
+        index = 0;
+        readAhead();
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!next()) {
+            return -1;
+        }
+        return buffer[index++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!next()) {
+            return -1;
+        }
+        int amount = Math.min(len, buffer.length - index);
+        System.arraycopy(buffer, index, b, off, amount);
+        index += amount;
+        return amount;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return buffer == null ? 0 : buffer.length - index;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Future<byte[]> future : pending) {
+            future.cancel(false);
+        }
+        pending.clear();
+        in.close();
+    }
+}
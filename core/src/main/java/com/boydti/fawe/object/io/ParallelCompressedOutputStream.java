@@ -0,0 +1,152 @@
+package com.boydti.fawe.object.io;
+
+import com.boydti.fawe.config.Settings;
+import com.boydti.fawe.util.MainUtil;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compress a stream in independent blocks on a thread pool<br>
+ *  - Each frame is {int raw length, int compressed length, compressed bytes} and the stream ends with a 0<br>
+ *  - The compressed bytes are a regular MainUtil.getCompressedOS stream, so each frame can be decompressed on its own<br>
+ *  - Frames are written in order, and the writer only waits if too many blocks are waiting to be compressed
+ */
+public class ParallelCompressedOutputStream extends OutputStream {
+
+    private static ExecutorService pool;
+
+    public static synchronized ExecutorService getPool() {
+        if (pool == null) {
+            final AtomicInteger count = new AtomicInteger();
+            pool = Executors.newFixedThreadPool(Math.max(1, Settings.QUEUE.PARALLEL_THREADS), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "FAWE Compression-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return pool;
+    }
+
+    private final DataOutputStream out;
+    private final int amount;
+    private final int maxPending;
+    private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+    private byte[] buffer;
+    private int size;
+
+    /**
+     * @param out
+     * @param amount the compression level (see MainUtil.getCompressedOS)
+     * @param blockSize the raw size of each block
+     */
+    public ParallelCompressedOutputStream(OutputStream out, int amount, int blockSize) {
+        this.out = new DataOutputStream(out);
+        this.amount = amount;
+        this.buffer = new byte[blockSize];
+        this.maxPending = Math.max(2, Settings.QUEUE.PARALLEL_THREADS << 1);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        buffer[size++] = (byte) b;
+        if (size == buffer.length) {
+            submit();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int amount = Math.min(len, buffer.length - size);
+            System.arraycopy(b, off, buffer, size, amount);
+            size += amount;
+            off += amount;
+            len -= amount;
+            if (size == buffer.length) {
+                submit();
+            }
+        }
+    }
+
+    private void submit() throws IOException {
+        final byte[] block = buffer;
+        final int length = size;
+        buffer = new byte[block.length];
+        size = 0;
+        pending.add(getPool().submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream(length >> 1);
+                DataOutputStream frame = new DataOutputStream(compressed);
+                frame.writeInt(length);
+                frame.writeInt(0);
+                OutputStream os = MainUtil.getCompressedOS(frame, amount, length);
+                os.write(block, 0, length);
+                os.close();
+                byte[] result = compressed.toByteArray();
+                int compressedLength = result.length - 8;
+                result[4] = (byte) (compressedLength >>> 24);
+                result[5] = (byte) (compressedLength >>> 16);
+                result[6] = (byte) (compressedLength >>> 8);
+                result[7] = (byte) (compressedLength);
+                return result;
+            }
+        }));
+        writeFinished(pending.size() > maxPending);
+    }
+
+    /**
+     * Write the frames which have been compressed, in order
+     * @param wait wait for at least one frame
+     */
+    private void writeFinished(boolean wait) throws IOException {
+        Future<byte[]> next;
+        while ((next = pending.peek()) != null && (wait || next.isDone())) {
+            pending.poll();
+            try {
+                out.write(next.get());
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IOException(e);
+            }
+            wait = false;
+        }
+    }
+
+    /**
+     * Does not compress a partial block (that would hurt the ratio), it only writes the finished frames
+     */
+    @Override
+    public void flush() throws IOException {
+        writeFinished(false);
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        if (size > 0) {
+            submit();
+        }
+        while (!pending.isEmpty()) {
+            writeFinished(true);
+        }
+        buffer = null;
+        out.writeInt(0);
+        out.close();
+    }
+}
@@ -27,6 +27,8 @@ public class DefaultProgressTracker extends RunnableVal2<FaweQueue.ProgressType,
     private int amountQueue = 0;
     // Number of chunks dispatched
     private int amountDispatch = 0;
+    // Time (ms) spent optimizing chunks before dispatch
+    private int timeOptimize = 0;
 
     @Override
     public void run(FaweQueue.ProgressType type, Integer amount) {
@@ -34,6 +36,9 @@ public class DefaultProgressTracker extends RunnableVal2<FaweQueue.ProgressType,
             case DISPATCH:
                 amountDispatch = amount;
                 break;
+            case OPTIMIZE:
+                timeOptimize += amount;
+                break;
             case QUEUE:
                 totalQueue++;
                 amountQueue = amount;
@@ -89,6 +94,6 @@ public class DefaultProgressTracker extends RunnableVal2<FaweQueue.ProgressType,
     public void sendTask() {
         String queue = StringMan.padRight("" + amountQueue, 3);
         String dispatch = StringMan.padRight("" + amountDispatch, 3);
-        player.sendTitle("", BBC.PROGRESS_MESSAGE.format(queue, dispatch));
+        player.sendTitle("", BBC.PROGRESS_MESSAGE.format(queue, dispatch, timeOptimize));
     }
 }
@@ -1,9 +1,11 @@
 package com.boydti.fawe.object.schematic;
 
 import com.boydti.fawe.FaweCache;
-import com.sk89q.worldedit.EditSession;
+import com.boydti.fawe.config.Settings;
+import com.boydti.fawe.object.clipboard.FaweClipboard;
+import com.boydti.fawe.util.TaskManager;
 import com.sk89q.worldedit.Vector;
-import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
 import com.sk89q.worldedit.extent.clipboard.io.ClipboardWriter;
 import com.sk89q.worldedit.regions.Region;
@@ -13,165 +15,252 @@ import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import javax.imageio.ImageIO;
 import javax.imageio.stream.ImageOutputStream;
 
 public class PNGWriter implements ClipboardWriter {
 
+    public static final int DEFAULT_SIZE = 1080;
+
+    /**
+     * The most blocks to read from the clipboard before drawing them
+     */
+    private static final int MAX_BATCH_BLOCKS = 1 << 20;
+
     private final ImageOutputStream out;
+    private final int imageSize;
 
     public PNGWriter(OutputStream out) throws IOException {
+        this(out, DEFAULT_SIZE);
+    }
+
+    /**
+     * @param out
+     * @param imageSize the width and height of the image in pixels
+     * @throws IOException
+     */
+    public PNGWriter(OutputStream out, int imageSize) throws IOException {
         this.out = ImageIO.createImageOutputStream(out);
+        this.imageSize = imageSize;
     }
 
+    /**
+     * The top, right and left face colors for each combined id
+     */
+    private static Color[][] FACE_COLORS;
+
+    private static Color[][] getFaceColors() {
+        Color[][] colors = FACE_COLORS;
+        if (colors == null) {
+            colors = new Color[3][FaweCache.CACHE_COLOR.length];
+            for (int combined = 0; combined < FaweCache.CACHE_COLOR.length; combined++) {
+                Color top = FaweCache.getColor(FaweCache.getId(combined), FaweCache.getData(combined));
+                if (top == null) {
+                    continue;
+                }
+                colors[0][combined] = top;
+                colors[1][combined] = top.darker();
+                colors[2][combined] = top.brighter();
+            }
+            FACE_COLORS = colors;
+        }
+        return colors;
+    }
 
+    private static Color getFaceColor(int face, int combined) {
+        return getColor(getFaceColors()[face], combined);
+    }
 
     public static Color getTopColor(int id, int data) {
-        return FaweCache.getColor(id, data);
+        return getFaceColor(0, FaweCache.getCombined(id, data));
     }
 
     public static Color getRightColor(int id, int data) {
-        return FaweCache.getColor(id, data).darker();
+        return getFaceColor(1, FaweCache.getCombined(id, data));
     }
 
     public static Color getLeftColor(int id, int data) {
-        return FaweCache.getColor(id, data).brighter();
+        return getFaceColor(2, FaweCache.getCombined(id, data));
+    }
+
+    /**
+     * Read the combined ids of an x slice of the clipboard into an array indexed by z * height + y
+     */
+    private static void readSlice(Clipboard clipboard, FaweClipboard faweClip, Vector min, Vector mutable, int x, int height, int length, int[] slice) {
+        for (int z = 0, index = 0; z < length; z++) {
+            for (int y = 0; y < height; y++, index++) {
+                if (faweClip != null) {
+                    slice[index] = FaweCache.getCombined(faweClip.getBlock(x, y, z));
+                } else {
+                    mutable.x = min.x + x;
+                    mutable.y = min.y + y;
+                    mutable.z = min.z + z;
+                    slice[index] = FaweCache.getCombined(clipboard.getBlock(mutable));
+                }
+            }
+        }
     }
 
     @Override
     public void write(Clipboard clipboard, WorldData data) throws IOException {
         Region region = clipboard.getRegion();
-        int width = region.getWidth();
-        int height = region.getHeight();
-        int length = region.getLength();
-        int imageSize = 1080;
-        BufferedImage img = new BufferedImage(imageSize, imageSize, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g2 = img.createGraphics();
-        double d = Math.min((double) imageSize / length, (double) imageSize / width) / 3;
-        double d_2 = d/2;
-        double cx = (double) imageSize / 2;
-        double cy = (double) imageSize / 2;
-
-        int[] poly1X = new int[4];
-        int[] poly1Y = new int[4];
-        int[] poly2X = new int[4];
-        int[] poly2Y = new int[4];
-        int[] poly3X = new int[4];
-        int[] poly3Y = new int[4];
-
-        double[] dpxj = new double[length];
-        double[] dpxi = new double[Math.max(256, width)];
-        double[] dpyj = new double[length];
-        double[] dpyi = new double[Math.max(256, width)];
-        double[] hd = new double[256];
-        for (int i = 0; i < hd.length; i++) {
-        }
-        for (int j = 0; j < dpxj.length; j++) {
-            dpxj[j] = cx + j * d;
-            dpyj[j] = imageSize / 2 + d + j * d_2;
-        }
-        for (int i = 0; i < Math.max(256, dpxi.length); i++) {
-            dpxi[i] = i * d;
-            dpyi[i] = i * d_2;
-        }
+        final int width = region.getWidth();
+        final int height = region.getHeight();
+        final int length = region.getLength();
+        final BufferedImage img = new BufferedImage(imageSize, imageSize, BufferedImage.TYPE_INT_ARGB);
+        final double d = Math.min((double) imageSize / length, (double) imageSize / width) / 3;
+        final double cx = (double) imageSize / 2;
+        final double cy = (double) imageSize / 2 + d;
+        final boolean fill = length * 4 < imageSize && width * 4 < imageSize;
 
-        g2.setColor(new Color(0, 0, 0));
-        g2.drawRect(0, 0, imageSize - 1, imageSize - 1);
-
-        boolean fill = length * 4 < imageSize && width * 4 < imageSize;
+        Graphics2D border = img.createGraphics();
+        border.setColor(new Color(0, 0, 0));
+        border.drawRect(0, 0, imageSize - 1, imageSize - 1);
+        border.dispose();
 
+        final Color[][] colors = getFaceColors();
+        FaweClipboard faweClip = clipboard instanceof BlockArrayClipboard ? ((BlockArrayClipboard) clipboard).IMP : null;
+        Vector min = clipboard.getMinimumPoint();
         Vector mutable = new Vector(0, 0, 0);
-        Vector mutableTop = new Vector(0, 0, 0);
-        Vector mutableRight = new Vector(0, 0, 0);
-        Vector mutableLeft = new Vector(0, 0, 0);
+        // The x slabs being drawn, plus the one after them (to check the left face)
+        // - A batch of slabs is drawn per parallel task, so the clipboard is never buffered as a whole
+        final int slabSize = length * height;
+        int batch = Math.max(1, Math.min(width, MAX_BATCH_BLOCKS / Math.max(1, slabSize)));
+        final int[][] slabs = new int[batch + 1][slabSize];
+        // {first x, number of slabs}
+        final int[] slabRange = new int[2];
 
-        Vector min = clipboard.getMinimumPoint();
-        int y0 = min.getBlockY();
-        int z0 = min.getBlockZ();
-        int x0 = min.getBlockX();
-        for (int x = x0; x < x0 + width; x++) {
-            mutable.x = x;
-            mutableTop.x = x;
-            mutableRight.x = x;
-            mutableLeft.x = x + 1;
-            int xx = x - x0;
-            double cpx1 = -dpxi[xx];
-            double cpy1 = dpyi[xx];
-            for (int z = z0; z < z0 + length; z++) {
-                mutable.z = z;
-                mutableTop.z = z;
-                mutableRight.z = z + 1;
-                mutableLeft.z = z;
-                int zz = z - z0;
-                double cpx = cpx1 + dpxj[zz];
-                double cpy2 = cpy1 + dpyj[zz];
-                for (int y = y0; y < y0 + height; y++) {
-                    mutable.y = y;
-                    BaseBlock block = clipboard.getBlock(mutable);
-                    if (block == EditSession.nullBlock) {
-                        continue;
-                    }
-                    mutableTop.y = y + 1;
-                    mutableRight.y = y;
-                    mutableLeft.y = y;
-                    if (clipboard.getBlock(mutableTop) != EditSession.nullBlock && clipboard.getBlock(mutableRight) != EditSession.nullBlock && clipboard.getBlock(mutableLeft) != EditSession.nullBlock) {
-                        continue;
+        // Each tile is a horizontal strip of the image, which draws the visible blocks of a slab overlapping it (z, y ascending)
+        int tiles = Math.max(1, Math.min(Settings.QUEUE.PARALLEL_THREADS, imageSize / 64));
+        int tileHeight = (imageSize + tiles - 1) / tiles;
+        ArrayList<Runnable> tasks = new ArrayList<>(tiles);
+        final ArrayList<Graphics2D> graphics = new ArrayList<>(tiles);
+        for (int tileY = 0; tileY < imageSize; tileY += tileHeight) {
+            final int minY = tileY;
+            final int maxY = Math.min(imageSize, tileY + tileHeight);
+            final Graphics2D g2 = img.createGraphics();
+            g2.setClip(0, minY, imageSize, maxY - minY);
+            graphics.add(g2);
+            tasks.add(new Runnable() {
+                private final double d_2 = d / 2;
+                private final int[] poly1X = new int[4];
+                private final int[] poly1Y = new int[4];
+                private final int[] poly2X = new int[4];
+                private final int[] poly2Y = new int[4];
+                private final int[] poly3X = new int[4];
+                private final int[] poly3Y = new int[4];
+
+                @Override
+                public void run() {
+                    for (int i = 0; i < slabRange[1]; i++) {
+                        draw(slabRange[0] + i, slabs[i], slabs[i + 1]);
                     }
-                    double cpy = cpy2 - dpxi[y - y0];
-                    poly1X[0] = (int) (cpx);
-                    poly1Y[0] = (int) (cpy);
-                    poly1X[1] = (int) (cpx - d);
-                    poly1Y[1] = (int) (cpy - d_2);
-                    poly1X[2] = (int) (cpx);
-                    poly1Y[2] = (int) (cpy - d);
-                    poly1X[3] = (int) (cpx + d);
-                    poly1Y[3] = (int) (cpy - d_2);
-
-                    poly2X[0] = (int) (cpx);
-                    poly2Y[0] = (int) (cpy);
-                    poly2X[1] = (int) (cpx + d);
-                    poly2Y[1] = (int) (cpy - d_2);
-                    poly2X[2] = (int) (cpx + d);
-                    poly2Y[2] = (int) (cpy + d_2 + dpxi[0]);
-                    poly2X[3] = (int) (cpx);
-                    poly2Y[3] = (int) (cpy + dpxi[1]);
-
-                    poly3X[0] = (int) (cpx);
-                    poly3Y[0] = (int) (cpy);
-                    poly3X[1] = (int) (cpx - d);
-                    poly3Y[1] = (int) (cpy - d_2);
-                    poly3X[2] = (int) (cpx - d);
-                    poly3Y[2] = (int) (cpy + d_2 + dpxi[0]);
-                    poly3X[3] = (int) (cpx);
-                    poly3Y[3] = (int) (cpy + dpxi[1]);
-
-                    Color colorTop = getTopColor(block.getId(), block.getData());
-                    Color colorRight = getRightColor(block.getId(), block.getData());
-                    Color colorLeft = getLeftColor(block.getId(), block.getData());
-
-                    if (fill) {
-                        g2.setColor(colorTop);
-                        g2.fillPolygon(poly1X, poly1Y, 4);
-                        g2.setColor(colorRight);
-                        g2.fillPolygon(poly2X, poly2Y, 4);
-                        g2.setColor(colorLeft);
-                        g2.fillPolygon(poly3X, poly3Y, 4);
-                    } else {
-                        g2.setColor(colorTop);
-                        g2.drawPolygon(poly1X, poly1Y, 4);
-                        g2.setColor(colorRight);
-                        g2.drawPolygon(poly2X, poly2Y, 4);
-                        g2.setColor(colorLeft);
-                        g2.drawPolygon(poly3X, poly3Y, 4);
+                }
+
+                private void draw(int x, int[] slice, int[] next) {
+                    for (int z = 0, index = 0; z < length; z++) {
+                        for (int y = 0; y < height; y++, index++) {
+                            int combined = slice[index];
+                            if (combined == 0) {
+                                continue;
+                            }
+                            double cpy = cy + (x + z) * d_2 - y * d;
+                            if (cpy + d < minY || cpy - d > maxY) {
+                                continue;
+                            }
+                            boolean top = y + 1 >= height || slice[index + 1] == 0;
+                            boolean right = z + 1 >= length || slice[index + height] == 0;
+                            boolean left = next[index] == 0;
+                            if (!top && !right && !left) {
+                                continue;
+                            }
+                            double cpx = cx + (z - x) * d;
+
+                            poly1X[0] = (int) (cpx);
+                            poly1Y[0] = (int) (cpy);
+                            poly1X[1] = (int) (cpx - d);
+                            poly1Y[1] = (int) (cpy - d_2);
+                            poly1X[2] = (int) (cpx);
+                            poly1Y[2] = (int) (cpy - d);
+                            poly1X[3] = (int) (cpx + d);
+                            poly1Y[3] = (int) (cpy - d_2);
+
+                            poly2X[0] = (int) (cpx);
+                            poly2Y[0] = (int) (cpy);
+                            poly2X[1] = (int) (cpx + d);
+                            poly2Y[1] = (int) (cpy - d_2);
+                            poly2X[2] = (int) (cpx + d);
+                            poly2Y[2] = (int) (cpy + d_2);
+                            poly2X[3] = (int) (cpx);
+                            poly2Y[3] = (int) (cpy + d);
+
+                            poly3X[0] = (int) (cpx);
+                            poly3Y[0] = (int) (cpy);
+                            poly3X[1] = (int) (cpx - d);
+                            poly3Y[1] = (int) (cpy - d_2);
+                            poly3X[2] = (int) (cpx - d);
+                            poly3Y[2] = (int) (cpy + d_2);
+                            poly3X[3] = (int) (cpx);
+                            poly3Y[3] = (int) (cpy + d);
+
+                            Color colorTop = getColor(colors[0], combined);
+                            Color colorRight = getColor(colors[1], combined);
+                            Color colorLeft = getColor(colors[2], combined);
+
+                            if (fill) {
+                                g2.setColor(colorTop);
+                                g2.fillPolygon(poly1X, poly1Y, 4);
+                                g2.setColor(colorRight);
+                                g2.fillPolygon(poly2X, poly2Y, 4);
+                                g2.setColor(colorLeft);
+                                g2.fillPolygon(poly3X, poly3Y, 4);
+                            } else {
+                                g2.setColor(colorTop);
+                                g2.drawPolygon(poly1X, poly1Y, 4);
+                                g2.setColor(colorRight);
+                                g2.drawPolygon(poly2X, poly2Y, 4);
+                                g2.setColor(colorLeft);
+                                g2.drawPolygon(poly3X, poly3Y, 4);
+                            }
+                        }
                     }
                 }
+            });
+        }
+        // Slabs are drawn in x order, so each one is painted over the slabs behind it
+        readSlice(clipboard, faweClip, min, mutable, 0, height, length, slabs[0]);
+        for (int x = 0; x < width; x += batch) {
+            int count = Math.min(batch, width - x);
+            for (int i = 1; i <= count; i++) {
+                if (x + i < width) {
+                    readSlice(clipboard, faweClip, min, mutable, x + i, height, length, slabs[i]);
+                } else {
+                    Arrays.fill(slabs[i], 0);
+                }
             }
+            slabRange[0] = x;
+            slabRange[1] = count;
+            TaskManager.IMP.parallel(tasks, tasks.size());
+            // The slab after this batch is the first slab of the next one
+            int[] tmp = slabs[0];
+            slabs[0] = slabs[count];
+            slabs[count] = tmp;
+        }
+        for (Graphics2D g2 : graphics) {
+            g2.dispose();
         }
         ImageIO.write(img, "png", out);
     }
 
+    private static Color getColor(Color[] colors, int combined) {
+        Color color = combined < colors.length ? colors[combined] : null;
+        return color != null ? color : colors[0];
+    }
+
     @Override
     public void close() throws IOException {
         out.close();
     }
-}
\ No newline at end of file
+}
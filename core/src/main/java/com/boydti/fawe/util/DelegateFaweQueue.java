@@ -6,6 +6,7 @@ import com.boydti.fawe.object.RunnableVal2;
 import com.boydti.fawe.object.exception.FaweException;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.world.biome.BaseBiome;
 import java.io.File;
 import java.util.Collection;
@@ -94,6 +95,26 @@ public class DelegateFaweQueue extends FaweQueue {
         parent.optimize();
     }
 
+    @Override
+    public int getHighestTerrainBlock(int x, int z, boolean naturalOnly) {
+        return parent.getHighestTerrainBlock(x, z, naturalOnly);
+    }
+
+    @Override
+    public int[] getBlockDistribution(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        return parent.getBlockDistribution(minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    @Override
+    public void prefetchChunks(Region region) {
+        parent.prefetchChunks(region);
+    }
+
+    @Override
+    public void prefetchChunks(int minCX, int minCZ, int maxCX, int maxCZ) {
+        parent.prefetchChunks(minCX, minCZ, maxCX, maxCZ);
+    }
+
     @Override
     public boolean setBlock(int x, int y, int z, int id, int data) {
         return parent.setBlock(x, y, z, id, data);
@@ -8,7 +8,7 @@ public class FaweTimer implements Runnable {
     private long tickStart = System.currentTimeMillis();
     private final long tickInterval = 5;
     private final double millisPer20Interval = tickInterval * 50 * 20;
-    private long tick = 0;
+    private volatile long tick = 0;
     private long tickMod = 0;
 
     @Override
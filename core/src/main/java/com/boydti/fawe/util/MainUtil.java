@@ -10,6 +10,8 @@ import com.boydti.fawe.object.RegionWrapper;
 import com.boydti.fawe.object.RunnableVal;
 import com.boydti.fawe.object.changeset.CPUOptimizedChangeSet;
 import com.boydti.fawe.object.changeset.FaweStreamChangeSet;
+import com.boydti.fawe.object.io.ParallelCompressedInputStream;
+import com.boydti.fawe.object.io.ParallelCompressedOutputStream;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.jnbt.DoubleTag;
 import com.sk89q.jnbt.EndTag;
@@ -172,12 +174,37 @@ public class MainUtil {
         return getCompressedIS(is, Settings.HISTORY.BUFFER_SIZE);
     }
 
+    /**
+     * Set in the first byte of a stream compressed in blocks (see getParallelCompressedOS)
+     */
+    public static final int PARALLEL_COMPRESSION = 0x80;
+
+    /**
+     * Compress a stream in independent blocks on a thread pool, so the writer isn't slowed by high compression levels<br>
+     *  - Read it back with getCompressedIS as usual (the blocks are decompressed in parallel too)
+     * @param os
+     * @param amount
+     * @param buffer the size of each block
+     * @return
+     * @throws IOException
+     */
+    public static FaweOutputStream getParallelCompressedOS(OutputStream os, int amount, int buffer) throws IOException {
+        if (amount <= 1 || Settings.QUEUE.PARALLEL_THREADS <= 1) {
+            return getCompressedOS(os, amount, buffer);
+        }
+        os.write((byte) (amount | PARALLEL_COMPRESSION));
+        return new FaweOutputStream(new ParallelCompressedOutputStream(os, amount, buffer));
+    }
+
     public static FaweInputStream getCompressedIS(InputStream is, int buffer) throws IOException {
         int amount = is.read();
         is = new BufferedInputStream(is, buffer);
         if (amount == 0) {
             return new FaweInputStream(is);
         }
+        if (amount != -1 && (amount & PARALLEL_COMPRESSION) != 0) {
+            return new FaweInputStream(new ParallelCompressedInputStream(is));
+        }
         LZ4Factory factory = LZ4Factory.fastestInstance();
         boolean gzip = amount > 6;
         if (gzip) {
@@ -531,6 +558,17 @@ public class MainUtil {
         }
     }
 
+    public static byte[][] copy(byte[][] arr) {
+        byte[][] copy = new byte[arr.length][];
+        for (int i = 0; i < arr.length; i++) {
+            byte[] inner = arr[i];
+            if (inner != null) {
+                copy[i] = inner.clone();
+            }
+        }
+        return copy;
+    }
+
     public static Object copyNd(Object arr) {
         if (arr.getClass().isArray()) {
             int innerArrayLength = Array.getLength(arr);
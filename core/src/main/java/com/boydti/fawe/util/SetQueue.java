@@ -10,6 +10,13 @@ import java.util.Collection;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class SetQueue {
 
@@ -38,6 +45,20 @@ public class SetQueue {
      */
     private final ConcurrentLinkedDeque<Runnable> emptyTasks = new ConcurrentLinkedDeque<>();
 
+    /**
+     * Long lived placement workers (only accessed from the main thread)<br>
+     *  - Workers all pull from the same queue (FaweQueue.next()), so idle workers take the next available chunk
+     */
+    private ExecutorService placementPool;
+    private int placementThreads;
+
+    /**
+     * Worker statistics (nanoseconds), useful for tuning the number of parallel threads
+     */
+    private final AtomicLong workerBusy = new AtomicLong();
+    private final AtomicLong workerIdle = new AtomicLong();
+    private final AtomicLong workerTicks = new AtomicLong();
+
     private final RunnableVal2<Long, FaweQueue> SET_TASK = new RunnableVal2<Long, FaweQueue>() {
         @Override
         public void run(Long free, FaweQueue queue) {
@@ -98,23 +119,10 @@ public class SetQueue {
                 boolean parallel = Settings.QUEUE.PARALLEL_THREADS > 1;
                 SET_TASK.value2.startSet(parallel);
                 try {
-                    if (Settings.QUEUE.PARALLEL_THREADS <= 1) {
+                    if (!parallel) {
                         SET_TASK.run();
                     } else {
-                        ArrayList<Thread> threads = new ArrayList<Thread>();
-                        for (int i = 0; i < Settings.QUEUE.PARALLEL_THREADS; i++) {
-                            threads.add(new Thread(SET_TASK));
-                        }
-                        for (Thread thread : threads) {
-                            thread.start();
-                        }
-                        for (Thread thread : threads) {
-                            try {
-                                thread.join();
-                            } catch (InterruptedException e) {
-                                MainUtil.handleError(e);
-                            }
-                        }
+                        runParallel(Settings.QUEUE.PARALLEL_THREADS);
                     }
                 } catch (Throwable e) {
                     MainUtil.handleError(e);
@@ -126,6 +134,93 @@ public class SetQueue {
         }, 1);
     }
 
+    private ExecutorService getPlacementPool(int threads) {
+        if (placementPool == null || placementThreads != threads) {
+            if (placementPool != null) {
+                placementPool.shutdown();
+            }
+            final AtomicInteger count = new AtomicInteger();
+            placementThreads = threads;
+            placementPool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "FAWE Placement-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return placementPool;
+    }
+
+    /**
+     * Run the SET_TASK on the placement workers and the main thread<br>
+     *  - Each worker stops taking chunks once the tick deadline (SET_TASK.value1) has elapsed<br>
+     *  - Returns once every worker has handed back to the main thread
+     * @param threads
+     */
+    private void runParallel(int threads) {
+        ExecutorService pool = getPlacementPool(threads - 1);
+        final Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                try {
+                    SET_TASK.run();
+                } finally {
+                    workerBusy.addAndGet(System.nanoTime() - start);
+                }
+            }
+        };
+        long start = System.nanoTime();
+        ArrayList<Future<?>> futures = new ArrayList<Future<?>>(threads - 1);
+        long busyBefore = workerBusy.get();
+        for (int i = 1; i < threads; i++) {
+            futures.add(pool.submit(worker));
+        }
+        try {
+            worker.run();
+        } finally {
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    MainUtil.handleError(e);
+                } catch (ExecutionException e) {
+                    MainUtil.handleError(e.getCause());
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            long busy = workerBusy.get() - busyBefore;
+            workerIdle.addAndGet(Math.max(0, elapsed * threads - busy));
+            workerTicks.incrementAndGet();
+        }
+    }
+
+    /**
+     * Get the total time (ns) the placement workers have spent setting chunks
+     * @return
+     */
+    public long getWorkerBusyTime() {
+        return workerBusy.get();
+    }
+
+    /**
+     * Get the total time (ns) the placement workers have spent waiting for other workers to finish
+     * @return
+     */
+    public long getWorkerIdleTime() {
+        return workerIdle.get();
+    }
+
+    /**
+     * Get the number of ticks placement was done in parallel
+     * @return
+     */
+    public long getParallelTicks() {
+        return workerTicks.get();
+    }
+
     public QueueStage getStage(FaweQueue queue) {
         if (activeQueues.contains(queue)) {
             return QueueStage.ACTIVE;
@@ -199,20 +294,7 @@ public class SetQueue {
             if (!parallel) {
                 SET_TASK.run();
             } else {
-                ArrayList<Thread> threads = new ArrayList<Thread>();
-                for (int i = 0; i < Settings.QUEUE.PARALLEL_THREADS; i++) {
-                    threads.add(new Thread(SET_TASK));
-                }
-                for (Thread thread : threads) {
-                    thread.start();
-                }
-                for (Thread thread : threads) {
-                    try {
-                        thread.join();
-                    } catch (InterruptedException e) {
-                        MainUtil.handleError(e);
-                    }
-                }
+                runParallel(Settings.QUEUE.PARALLEL_THREADS);
             }
         } catch (Throwable e) {
             MainUtil.handleError(e);
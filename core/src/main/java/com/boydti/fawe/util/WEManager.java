@@ -4,7 +4,6 @@ import com.boydti.fawe.config.BBC;
 import com.boydti.fawe.config.Settings;
 import com.boydti.fawe.object.FawePlayer;
 import com.boydti.fawe.object.RegionWrapper;
-import com.boydti.fawe.object.RunnableVal;
 import com.boydti.fawe.object.exception.FaweException;
 import com.boydti.fawe.object.extent.NullExtent;
 import com.boydti.fawe.regions.FaweMask;
@@ -15,6 +14,8 @@ import com.sk89q.worldedit.extent.Extent;
 import java.lang.reflect.Field;
 import java.util.ArrayDeque;
 import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class WEManager {
 
@@ -63,48 +64,93 @@ public class WEManager {
     }
 
     /**
-     * Get a player's mask
+     * How long a player's mask is used before it is refreshed in the background
+     */
+    private static final long MASK_REFRESH_MS = 1000;
+
+    private final AtomicInteger maskVersion = new AtomicInteger();
+
+    private static final class CachedMask {
+        private final RegionWrapper[] regions;
+        private final String world;
+        private final int version;
+        private final long time;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private CachedMask(RegionWrapper[] regions, String world, int version) {
+            this.regions = regions;
+            this.world = world;
+            this.version = version;
+            this.time = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Mark every player's mask as outdated (e.g. when a protection plugin's regions or members change)<br>
+     *  - Each mask is loaded again (before returning) the next time it is needed
+     */
+    public void invalidateMasks() {
+        maskVersion.incrementAndGet();
+    }
+
+    /**
+     * Discard a player's mask, so it is loaded again the next time it is needed
+     * @param player
+     */
+    public void invalidateMask(FawePlayer<?> player) {
+        player.deleteMeta("lastMask");
+    }
+
+    /**
+     * Get a player's mask<br>
+     *  - The mask is cached per player, and loaded before returning if there is none for their current world, or it was invalidated<br>
+     *  - Otherwise a mask which has aged out is refreshed in the background, so this doesn't wait for the protection plugins
      * @param player
      * @return
      */
     public RegionWrapper[] getMask(final FawePlayer<?> player) {
-//        HashSet<RegionWrapper> mask = TaskManager.IMP.sync(new RunnableVal<HashSet<RegionWrapper>>() {
-        HashSet<RegionWrapper> mask = new RunnableVal<HashSet<RegionWrapper>>() {
-            @Override
-            public void run(HashSet<RegionWrapper> ignore) {
-                this.value = new HashSet<>();
-                String world = player.getLocation().world;
-                if (!world.equals(player.getMeta("lastMaskWorld"))) {
-                    player.deleteMeta("lastMaskWorld");
-                    player.deleteMeta("lastMask");
-                }
-                player.setMeta("lastMaskWorld", world);
-                if (player.hasPermission("fawe.bypass") || !Settings.REGION_RESTRICTIONS) {
-                    value.add(new RegionWrapper(Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE));
-                    return;
-                }
-                for (final FaweMaskManager manager : managers) {
-                    if (player.hasPermission("fawe." + manager.getKey())) {
-                        final FaweMask mask = manager.getMask(player);
-                        if (mask != null) {
-                            value.addAll(mask.getRegions());
+        if (player.hasPermission("fawe.bypass") || !Settings.REGION_RESTRICTIONS) {
+            return new RegionWrapper[] { RegionWrapper.GLOBAL() };
+        }
+        final String world = player.getLocation().world;
+        final CachedMask cached = player.getMeta("lastMask");
+        if (cached == null || !world.equals(cached.world) || cached.version != maskVersion.get()) {
+            CachedMask mask = loadMask(player, world);
+            player.setMeta("lastMask", mask);
+            return mask.regions.clone();
+        }
+        if (System.currentTimeMillis() - cached.time > MASK_REFRESH_MS && cached.refreshing.compareAndSet(false, true)) {
+            TaskManager.IMP.async(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        CachedMask mask = loadMask(player, world);
+                        if (player.getMeta("lastMask") == cached) {
+                            player.setMeta("lastMask", mask);
                         }
+                    } catch (Throwable e) {
+                        cached.refreshing.set(false);
+                        MainUtil.handleError(e);
                     }
                 }
-            }
-//        }, 1000);
-        }.runAndGet();
-        if (mask == null || mask.isEmpty()) {
-            mask = player.getMeta("lastMask");
-            if (mask == null) {
-                mask = new HashSet<>();
-            }
+            });
         }
-        player.setMeta("lastmask", mask);
-        return mask.toArray(new RegionWrapper[mask.size()]);
+        return cached.regions.clone();
     }
 
-
+    private CachedMask loadMask(FawePlayer<?> player, String world) {
+        int version = maskVersion.get();
+        HashSet<RegionWrapper> regions = new HashSet<>();
+        for (final FaweMaskManager manager : managers) {
+            if (player.hasPermission("fawe." + manager.getKey())) {
+                final FaweMask mask = manager.getMask(player);
+                if (mask != null) {
+                    regions.addAll(mask.getRegions());
+                }
+            }
+        }
+        return new CachedMask(regions.toArray(new RegionWrapper[regions.size()]), world, version);
+    }
 
     public boolean intersects(final RegionWrapper region1, final RegionWrapper region2) {
         return (region1.minX <= region2.maxX) && (region1.maxX >= region2.minX) && (region1.minZ <= region2.maxZ) && (region1.maxZ >= region2.minZ);
@@ -43,6 +43,17 @@ public final class NBTInputStream implements Closeable {
 
     private final DataInputStream is;
 
+    /**
+     * Reused when streaming arrays to an NBTStreamer
+     */
+    private byte[] buffer;
+    private int[] intBuffer;
+    /**
+     * The node paths built while streaming, so they are only concatenated once
+     */
+    private final Map<String, Map<String, String>> childNodes = new HashMap<>();
+    private final Map<String, String[]> arrayNodes = new HashMap<>();
+
     /**
      * Creates a new {@code NBTInputStream}, which will source its data
      * from the specified input stream.
@@ -99,48 +110,116 @@ public final class NBTInputStream implements Closeable {
         }
     }
 
+    private String getChildNode(String node, String name) {
+        Map<String, String> children = childNodes.get(node);
+        if (children == null) {
+            childNodes.put(node, children = new HashMap<>());
+        }
+        String child = children.get(name);
+        if (child == null) {
+            children.put(name, child = node + "." + name);
+        }
+        return child;
+    }
+
+    /**
+     * @param node
+     * @return {node + ".?", node + ".#"}
+     */
+    private String[] getArrayNodes(String node) {
+        String[] nodes = arrayNodes.get(node);
+        if (nodes == null) {
+            arrayNodes.put(node, nodes = new String[] { node + ".?", node + ".#" });
+        }
+        return nodes;
+    }
+
+    private byte[] getBuffer() {
+        if (buffer == null) {
+            buffer = new byte[8192];
+        }
+        return buffer;
+    }
+
+    private void readByteArray(int length, NBTStreamer.ByteArrayReader reader) throws IOException {
+        byte[] buffer = getBuffer();
+        for (int index = 0; index < length; ) {
+            int amount = Math.min(buffer.length, length - index);
+            is.readFully(buffer, 0, amount);
+            reader.run(index, buffer, 0, amount);
+            index += amount;
+        }
+    }
+
+    private void readByteArray(int length, NBTStreamer.ByteReader reader) throws IOException {
+        byte[] buffer = getBuffer();
+        for (int index = 0; index < length; ) {
+            int amount = Math.min(buffer.length, length - index);
+            is.readFully(buffer, 0, amount);
+            for (int i = 0; i < amount; i++) {
+                reader.run(index++, buffer[i] & 0xFF);
+            }
+        }
+    }
+
+    private void readIntArray(int length, NBTStreamer.IntArrayReader reader) throws IOException {
+        byte[] buffer = getBuffer();
+        if (intBuffer == null) {
+            intBuffer = new int[buffer.length >> 2];
+        }
+        for (int index = 0; index < length; ) {
+            int amount = Math.min(intBuffer.length, length - index);
+            is.readFully(buffer, 0, amount << 2);
+            for (int i = 0, j = 0; i < amount; i++, j += 4) {
+                intBuffer[i] = ((buffer[j] & 0xFF) << 24) | ((buffer[j + 1] & 0xFF) << 16) | ((buffer[j + 2] & 0xFF) << 8) | (buffer[j + 3] & 0xFF);
+            }
+            reader.run(index, intBuffer, 0, amount);
+            index += amount;
+        }
+    }
+
     private void readTagPaylodLazy(int type, int depth, String node, RunnableVal2<String, RunnableVal2> getReader) throws IOException {
         switch (type) {
             case NBTConstants.TYPE_END:
                 return;
             case NBTConstants.TYPE_BYTE:
-                is.skip(1);
+                is.skipBytes(1);
                 return;
             case NBTConstants.TYPE_SHORT:
-                is.skip(2);
+                is.skipBytes(2);
                 return;
             case NBTConstants.TYPE_INT:
-                is.skip(4);
+                is.skipBytes(4);
                 return;
             case NBTConstants.TYPE_LONG:
-                is.skip(8);
+                is.skipBytes(8);
                 return;
             case NBTConstants.TYPE_FLOAT:
-                is.skip(4);
+                is.skipBytes(4);
                 return;
             case NBTConstants.TYPE_DOUBLE:
-                is.skip(8);
+                is.skipBytes(8);
                 return;
             case NBTConstants.TYPE_STRING:
                 int length = is.readShort();
-                is.skip(length);
+                is.skipBytes(length);
                 return;
             case NBTConstants.TYPE_BYTE_ARRAY:
-                RunnableVal2 reader = getReader.runAndGet(node + ".?", null).value2;
+                String[] arrayNodes = getArrayNodes(node);
+                RunnableVal2 reader = getReader.runAndGet(arrayNodes[0], null).value2;
                 length = is.readInt();
                 if (reader != null) {
                     reader.run(length, NBTConstants.TYPE_BYTE);
                 }
-                reader = getReader.runAndGet(node + ".#", null).value2;
+                reader = getReader.runAndGet(arrayNodes[1], null).value2;
                 if (reader == null) {
-                    is.skip(length);
+                    is.skipBytes(length);
                     return;
                 }
-                if (reader instanceof NBTStreamer.ByteReader) {
-                    NBTStreamer.ByteReader byteReader = (NBTStreamer.ByteReader) reader;
-                    for (int i = 0; i < length; i++) {
-                        byteReader.run(i, is.read());
-                    }
+                if (reader instanceof NBTStreamer.ByteArrayReader) {
+                    readByteArray(length, (NBTStreamer.ByteArrayReader) reader);
+                } else if (reader instanceof NBTStreamer.ByteReader) {
+                    readByteArray(length, (NBTStreamer.ByteReader) reader);
                 } else {
                     for (int i = 0; i < length; i++) {
                         reader.run(i, is.readByte());
@@ -150,11 +229,12 @@ public final class NBTInputStream implements Closeable {
             case NBTConstants.TYPE_LIST:
                 int childType = is.readByte();
                 length = is.readInt();
-                reader = getReader.runAndGet(node + ".?", null).value2;
+                arrayNodes = getArrayNodes(node);
+                reader = getReader.runAndGet(arrayNodes[0], null).value2;
                 if (reader != null) {
                     reader.run(length, childType);
                 }
-                node += ".#";
+                node = arrayNodes[1];
                 reader = getReader.runAndGet(node, null).value2;
                 depth++;
                 if (reader == null) {
@@ -175,7 +255,7 @@ public final class NBTInputStream implements Closeable {
                         return;
                     }
                     String name = readNamedTagName(childType);
-                    String childNode = node + "." + name;
+                    String childNode = getChildNode(node, name);
                     reader = getReader.runAndGet(childNode, null).value2;
                     if (reader == null) {
                         readTagPaylodLazy(childType, depth, childNode, getReader);
@@ -185,13 +265,18 @@ public final class NBTInputStream implements Closeable {
                 }
             case NBTConstants.TYPE_INT_ARRAY:
                 length = is.readInt();
-                reader = getReader.runAndGet(node + ".?", null).value2;
+                arrayNodes = getArrayNodes(node);
+                reader = getReader.runAndGet(arrayNodes[0], null).value2;
                 if (reader != null) {
                     reader.run(length, NBTConstants.TYPE_INT);
                 }
-                reader = getReader.runAndGet(node + ".#", null).value2;
+                reader = getReader.runAndGet(arrayNodes[1], null).value2;
                 if (reader == null) {
-                    is.skip(length << 2);
+                    is.skipBytes(length << 2);
+                    return;
+                }
+                if (reader instanceof NBTStreamer.IntArrayReader) {
+                    readIntArray(length, (NBTStreamer.IntArrayReader) reader);
                     return;
                 }
                 for (int i = 0; i < length; i++) {
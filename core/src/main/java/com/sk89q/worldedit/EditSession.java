@@ -772,100 +772,25 @@ public class EditSession implements Extent {
      * @return height of highest block found or 'minY'
      */
     public int getHighestTerrainBlock(final int x, final int z, final int minY, final int maxY, final boolean naturalOnly) {
-        Vector pt = new Vector(x, 0, z);
+        // The queue caches the highest block of each column
+        int height;
+        try {
+            height = queue.getHighestTerrainBlock(x, z, naturalOnly);
+        } catch (FaweException ignore) {
+            debug(BBC.WORLDEDIT_FAILED_LOAD_CHUNK, x >> 4, z >> 4);
+            height = -1;
+        }
+        if (height <= maxY) {
+            int result = Math.max(height, minY);
+            // Charge the checks that scanning down to the result would have used
+            if (!limit.MAX_CHECKS(maxY - result + 1)) {
+                throw new FaweException(BBC.WORLDEDIT_CANCEL_REASON_MAX_CHECKS);
+            }
+            return result;
+        }
         for (int y = maxY; y >= minY; --y) {
             BaseBlock block = getLazyBlock(x, y, z);
-            final int id = block.getId();
-            int data;
-            switch (id) {
-                case 0: {
-                    continue;
-                }
-                case 2:
-                case 4:
-                case 13:
-                case 14:
-                case 15:
-                case 20:
-                case 21:
-                case 22:
-                case 25:
-                case 30:
-                case 32:
-                case 37:
-                case 39:
-                case 40:
-                case 41:
-                case 42:
-                case 45:
-                case 46:
-                case 47:
-                case 48:
-                case 49:
-                case 51:
-                case 52:
-                case 54:
-                case 55:
-                case 56:
-                case 57:
-                case 58:
-                case 60:
-                case 61:
-                case 62:
-                case 7:
-                case 8:
-                case 9:
-                case 10:
-                case 11:
-                case 73:
-                case 74:
-                case 78:
-                case 79:
-                case 80:
-                case 81:
-                case 82:
-                case 83:
-                case 84:
-                case 85:
-                case 87:
-                case 88:
-                case 101:
-                case 102:
-                case 103:
-                case 110:
-                case 112:
-                case 113:
-                case 117:
-                case 121:
-                case 122:
-                case 123:
-                case 124:
-                case 129:
-                case 133:
-                case 138:
-                case 137:
-                case 140:
-                case 165:
-                case 166:
-                case 169:
-                case 170:
-                case 172:
-                case 173:
-                case 174:
-                case 176:
-                case 177:
-                case 181:
-                case 182:
-                case 188:
-                case 189:
-                case 190:
-                case 191:
-                case 192:
-                    return y;
-                default:
-                    data = 0;
-            }
-            if (naturalOnly ? BlockType.isNaturalTerrainBlock(id, data) : !BlockType.canPassThrough(id, data)) {
+            if (FaweCache.isTerrain(block.getId(), naturalOnly)) {
                 return y;
             }
         }
@@ -1120,6 +1045,16 @@ public class EditSession implements Extent {
         return null;
     }
 
+    /**
+     * Start loading the chunks in a region, so reading it only waits on chunks which are not yet loaded
+     * @param region
+     */
+    private void prefetchChunks(final Region region) {
+        if (this.queue != null) {
+            this.queue.prefetchChunks(region);
+        }
+    }
+
     /**
      * Count the number of blocks of a given list of types in a region.
      *
@@ -1138,16 +1073,42 @@ public class EditSession implements Extent {
     }
 
     public int countBlock(final Region region, final boolean[] ids) {
+        final int[] counts = this.getCombinedDistribution(region);
         int i = 0;
-        for (final Vector pt : region) {
-            final int id = this.getBlockType(pt);
-            if (ids[id]) {
-                i++;
+        for (int combined = 0; combined < counts.length; combined++) {
+            final int id = combined >> 4;
+            if (id < ids.length && ids[id]) {
+                i += counts[combined];
             }
         }
         return i;
     }
 
+    /**
+     * Count the blocks in a region by combined id (id << 4 | data)<br>
+     *  - Cuboids are counted by the queue a section at a time, other regions a block at a time
+     *
+     * @param region the region
+     * @return [ combined ] => count
+     */
+    private int[] getCombinedDistribution(final Region region) {
+        if (region instanceof CuboidRegion) {
+            final Vector min = region.getMinimumPoint();
+            final Vector max = region.getMaximumPoint();
+            final long volume = (long) (max.getBlockX() - min.getBlockX() + 1) * (max.getBlockY() - min.getBlockY() + 1) * (max.getBlockZ() - min.getBlockZ() + 1);
+            if (!limit.MAX_CHECKS(volume)) {
+                throw new FaweException(BBC.WORLDEDIT_CANCEL_REASON_MAX_CHECKS);
+            }
+            return queue.getBlockDistribution(min.getBlockX(), min.getBlockY(), min.getBlockZ(), max.getBlockX(), max.getBlockY(), max.getBlockZ());
+        }
+        prefetchChunks(region);
+        final int[] counts = new int[65536];
+        for (final Vector pt : region) {
+            counts[FaweCache.getCombined(this.getLazyBlock(pt))]++;
+        }
+        return counts;
+    }
+
     /**
      * Count the number of blocks of a list of types in a region.
      *
@@ -1385,6 +1346,7 @@ public class EditSession implements Extent {
         checkNotNull(region);
         checkNotNull(mask);
         checkNotNull(pattern);
+        prefetchChunks(region);
         final BlockReplace replace = new BlockReplace(EditSession.this, Patterns.wrap(pattern));
         final RegionMaskingFilter filter = new RegionMaskingFilter(mask, replace);
         final RegionVisitor visitor = new RegionVisitor(region, filter);
@@ -2281,47 +2243,14 @@ public class EditSession implements Extent {
      */
     public List<Countable<Integer>> getBlockDistribution(final Region region) {
         final List<Countable<Integer>> distribution = new ArrayList<Countable<Integer>>();
-        final Map<Integer, Countable<Integer>> map = new HashMap<Integer, Countable<Integer>>();
-
-        if (region instanceof CuboidRegion) {
-            // Doing this for speed
-            final Vector min = region.getMinimumPoint();
-            final Vector max = region.getMaximumPoint();
-
-            final int minX = min.getBlockX();
-            final int minY = min.getBlockY();
-            final int minZ = min.getBlockZ();
-            final int maxX = max.getBlockX();
-            final int maxY = max.getBlockY();
-            final int maxZ = max.getBlockZ();
-
-            for (int x = minX; x <= maxX; ++x) {
-                for (int y = minY; y <= maxY; ++y) {
-                    for (int z = minZ; z <= maxZ; ++z) {
-                        final Vector pt = new Vector(x, y, z);
-
-                        final int id = this.getBlockType(pt);
-
-                        if (map.containsKey(id)) {
-                            map.get(id).increment();
-                        } else {
-                            final Countable<Integer> c = new Countable<Integer>(id, 1);
-                            map.put(id, c);
-                            distribution.add(c);
-                        }
-                    }
-                }
-            }
-        } else {
-            for (final Vector pt : region) {
-                final int id = this.getBlockType(pt);
-
-                if (map.containsKey(id)) {
-                    map.get(id).increment();
-                } else {
-                    final Countable<Integer> c = new Countable<Integer>(id, 1);
-                    map.put(id, c);
-                }
+        final int[] counts = this.getCombinedDistribution(region);
+        final int[] idCounts = new int[4096];
+        for (int combined = 0; combined < counts.length; combined++) {
+            idCounts[combined >> 4] += counts[combined];
+        }
+        for (int id = 0; id < idCounts.length; id++) {
+            if (idCounts[id] != 0) {
+                distribution.add(new Countable<Integer>(id, idCounts[id]));
             }
         }
 
@@ -2339,47 +2268,10 @@ public class EditSession implements Extent {
      */
     public List<Countable<BaseBlock>> getBlockDistributionWithData(final Region region) {
         final List<Countable<BaseBlock>> distribution = new ArrayList<Countable<BaseBlock>>();
-        final Map<BaseBlock, Countable<BaseBlock>> map = new HashMap<BaseBlock, Countable<BaseBlock>>();
-
-        if (region instanceof CuboidRegion) {
-            // Doing this for speed
-            final Vector min = region.getMinimumPoint();
-            final Vector max = region.getMaximumPoint();
-
-            final int minX = min.getBlockX();
-            final int minY = min.getBlockY();
-            final int minZ = min.getBlockZ();
-            final int maxX = max.getBlockX();
-            final int maxY = max.getBlockY();
-            final int maxZ = max.getBlockZ();
-
-            for (int x = minX; x <= maxX; ++x) {
-                for (int y = minY; y <= maxY; ++y) {
-                    for (int z = minZ; z <= maxZ; ++z) {
-                        final Vector pt = new Vector(x, y, z);
-
-                        final BaseBlock blk = FaweCache.getBlock(this.getBlockType(pt), this.getBlockData(pt));
-
-                        if (map.containsKey(blk)) {
-                            map.get(blk).increment();
-                        } else {
-                            final Countable<BaseBlock> c = new Countable<BaseBlock>(blk, 1);
-                            map.put(blk, c);
-                            distribution.add(c);
-                        }
-                    }
-                }
-            }
-        } else {
-            for (final Vector pt : region) {
-                final BaseBlock blk = FaweCache.getBlock(this.getBlockType(pt), this.getBlockData(pt));
-
-                if (map.containsKey(blk)) {
-                    map.get(blk).increment();
-                } else {
-                    final Countable<BaseBlock> c = new Countable<BaseBlock>(blk, 1);
-                    map.put(blk, c);
-                }
+        final int[] counts = this.getCombinedDistribution(region);
+        for (int combined = 0; combined < counts.length; combined++) {
+            if (counts[combined] != 0) {
+                distribution.add(new Countable<BaseBlock>(FaweCache.getBlock(FaweCache.getId(combined), FaweCache.getData(combined)), counts[combined]));
             }
         }
 
@@ -27,6 +27,7 @@ import com.boydti.fawe.object.FawePlayer;
 import com.boydti.fawe.object.changeset.DiskStorageHistory;
 import com.boydti.fawe.object.changeset.FaweChangeSet;
 import com.boydti.fawe.object.clipboard.DiskOptimizedClipboard;
+import com.boydti.fawe.object.collection.HistoryRing;
 import com.boydti.fawe.util.EditSessionBuilder;
 import com.boydti.fawe.util.MainUtil;
 import com.sk89q.jchronic.Chronic;
@@ -65,9 +66,7 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
 import java.util.TimeZone;
 import java.util.UUID;
@@ -93,32 +92,13 @@ public class LocalSession {
     // Session related
     private transient RegionSelector selector = new CuboidRegionSelector();
     private transient boolean placeAtPos1 = false;
-    private transient List<Object> history = Collections.synchronizedList(new LinkedList<Object>() {
+    private transient HistoryRing<FaweChangeSet> history = new HistoryRing<FaweChangeSet>() {
         @Override
-        public void add(int index, Object element) { // Integer = Lazy evaluated FaweChangeSet
-            if (element instanceof Integer || element instanceof FaweChangeSet) {
-                super.add(index, element);
-            } else {
-                throw new ClassCastException("Must add either Integer (index) or FaweChangeSet");
-            }
-        }
-        @Override
-        public Object get(int index) {
-            Object value = super.get(index);
-            if (value instanceof Integer) {
-                value = getChangeSet(value);
-                set(index, value);
-            }
-            return value;
-        }
-
-        @Override
-        public Object remove(int index) {
-            return getChangeSet(super.remove(index));
+        protected FaweChangeSet load(int index) { // Lazy evaluated DiskStorageHistory
+            return new DiskStorageHistory(currentWorld, uuid, index);
         }
-    });
+    };
     private transient volatile Integer historyNegativeIndex;
-    private transient volatile long historySize = 0;
     private transient ClipboardHolder clipboard;
     private transient boolean toolControl = true;
     private transient boolean superPickaxe = false;
@@ -222,11 +202,11 @@ public class LocalSession {
                 }
             });
         }
-        historySize = 0;
         if (editIds.size() > 0) {
             Collections.sort(editIds);
             for (int index : editIds) {
-                history.add(index);
+                // Nothing is in memory until it is loaded
+                history.addId(index, 0);
             }
         }
         return editIds.size() > 0;
@@ -344,7 +324,6 @@ public class LocalSession {
     public void clearHistory() {
         history.clear();
         historyNegativeIndex = 0;
-        historySize = 0;
     }
 
     /**
@@ -359,18 +338,8 @@ public class LocalSession {
         remember(editSession, true, false, limit);
     }
 
-    private FaweChangeSet getChangeSet(Object o) {
-        if (o instanceof FaweChangeSet) {
-            return (FaweChangeSet) o;
-        }
-        if (o instanceof Integer) {
-            return new DiskStorageHistory(currentWorld, this.uuid, (Integer) o);
-        }
-        return null;
-    }
-
     public void remember(final EditSession editSession, final boolean append, final boolean sendMessage, int limitMb) {
-        if (editSession == null || editSession.getChangeSet() == null || limitMb == 0 || ((historySize >> 20) > limitMb && !append)) {
+        if (editSession == null || editSession.getChangeSet() == null || limitMb == 0 || ((history.getTotalSize() >> 20) > limitMb && !append)) {
             return;
         }
         // It should have already been flushed, but just in case!
@@ -385,35 +354,20 @@ public class LocalSession {
         }
         // Destroy any sessions after this undo point
         if (append) {
-            int size = getHistoryNegativeIndex();
-            ListIterator<Object> iter = history.listIterator();
-            int i = 0;
-            int cutoffIndex = history.size() - getHistoryNegativeIndex();
-            while (iter.hasNext()) {
-                Object item = iter.next();
-                if (++i > cutoffIndex) {
-                    if (item instanceof FaweChangeSet) {
-                        FaweChangeSet changeSet = (FaweChangeSet) item;
-                        historySize -= MainUtil.getSizeInMemory(changeSet);
-                    }
-                    iter.remove();
-                }
-            }
+            history.truncate(history.size() - getHistoryNegativeIndex());
         }
         FaweChangeSet changeSet = (FaweChangeSet) editSession.getChangeSet();
-        historySize += MainUtil.getSizeInMemory(changeSet);
         if (append) {
-            history.add(changeSet);
+            history.add(changeSet, MainUtil.getSizeInMemory(changeSet));
             if (getHistoryNegativeIndex() != 0) {
                 setDirty();
                 historyNegativeIndex = 0;
             }
         } else {
-            history.add(0, changeSet);
+            history.addFirst(changeSet, MainUtil.getSizeInMemory(changeSet));
         }
-        while ((history.size() > MAX_HISTORY_SIZE || (historySize >> 20) > limitMb) && history.size() > 1) {
-            FaweChangeSet item = (FaweChangeSet) history.remove(0);
-            historySize -= MainUtil.getSizeInMemory(item);
+        while ((history.size() > MAX_HISTORY_SIZE || (history.getTotalSize() >> 20) > limitMb) && history.size() > 1) {
+            history.removeFirst();
         }
     }
 
@@ -439,7 +393,7 @@ public class LocalSession {
         checkNotNull(player);
         loadSessionHistoryFromDisk(player.getUniqueId(), player.getWorld());
         if (getHistoryNegativeIndex() < history.size()) {
-            FaweChangeSet changeSet = (FaweChangeSet) history.get(getHistoryIndex());
+            FaweChangeSet changeSet = history.get(getHistoryIndex());
             EditSession newEditSession = new EditSessionBuilder(changeSet.getWorld())
                     .allowedRegionsEverywhere()
                     .checkMemory(false)
@@ -485,7 +439,7 @@ public class LocalSession {
         if (getHistoryNegativeIndex() > 0) {
             setDirty();
             historyNegativeIndex--;
-            FaweChangeSet changeSet = (FaweChangeSet) history.get(getHistoryIndex());
+            FaweChangeSet changeSet = history.get(getHistoryIndex());
             EditSession newEditSession = new EditSessionBuilder(changeSet.getWorld())
                     .allowedRegionsEverywhere()
                     .checkMemory(false)
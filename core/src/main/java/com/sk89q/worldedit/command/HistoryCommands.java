@@ -20,10 +20,12 @@
 package com.sk89q.worldedit.command;
 
 import com.boydti.fawe.Fawe;
+import com.boydti.fawe.FaweAPI;
 import com.boydti.fawe.config.BBC;
 import com.boydti.fawe.config.Settings;
 import com.boydti.fawe.database.DBHandler;
 import com.boydti.fawe.database.RollbackDatabase;
+import com.boydti.fawe.logging.rollback.ParallelRollback;
 import com.boydti.fawe.object.RunnableVal;
 import com.boydti.fawe.object.changeset.DiskStorageHistory;
 import com.boydti.fawe.util.MainUtil;
@@ -39,7 +41,6 @@ import com.sk89q.worldedit.WorldVector;
 import com.sk89q.worldedit.entity.Player;
 import com.sk89q.worldedit.world.World;
 import java.util.UUID;
-import java.util.concurrent.atomic.AtomicInteger;
 
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -90,20 +91,22 @@ public class HistoryCommands {
         Vector bot = origin.subtract(radius, radius, radius);
         Vector top = origin.add(radius, radius, radius);
         RollbackDatabase database = DBHandler.IMP.getDatabase(Fawe.imp().getWorldName(world));
-        final AtomicInteger count = new AtomicInteger();
+        final ParallelRollback rollback = new ParallelRollback(world, FaweAPI.createQueue(Fawe.imp().getWorldName(world), false));
         database.getPotentialEdits(other, System.currentTimeMillis() - timeDiff, bot, top, new RunnableVal<DiskStorageHistory>() {
                 @Override
                 public void run(DiskStorageHistory edit) {
-                    EditSession session = edit.toEditSession(null);
-                    session.undo(session);
-                    edit.deleteFiles();
+                    rollback.add(edit);
                     BBC.ROLLBACK_ELEMENT.send(player, Fawe.imp().getWorldName(edit.getWorld()) + "/" + user + "-" + edit.getIndex());
-                    count.incrementAndGet();
                 }
             }, new Runnable() {
                 @Override
                 public void run() {
-                    BBC.TOOL_INSPECT_INFO_FOOTER.send(player, count);
+                    rollback.apply();
+                    // Only delete the history of edits which could be undone
+                    for (DiskStorageHistory edit : rollback.getAppliedEdits()) {
+                        edit.deleteFiles();
+                    }
+                    BBC.TOOL_INSPECT_INFO_FOOTER.send(player, rollback.size());
                 }
             }, true
         );
@@ -76,8 +76,7 @@ public enum ClipboardFormat {
             } else {
                 gzip = new GZIPOutputStream(outputStream, true);
             }
-            NBTOutputStream nbtStream = new NBTOutputStream(new BufferedOutputStream(gzip));
-            return new SchematicWriter(nbtStream);
+            return new SchematicWriter(new BufferedOutputStream(gzip));
         }
 
         @Override
@@ -3,6 +3,7 @@ package com.sk89q.worldedit.extent.clipboard.io;
 import com.boydti.fawe.FaweCache;
 import com.boydti.fawe.object.RunnableVal2;
 import com.boydti.fawe.object.clipboard.FaweClipboard;
+import com.boydti.fawe.object.clipboard.ReadOnlyClipboard;
 import com.boydti.fawe.util.ReflectionUtils;
 import com.sk89q.jnbt.ByteArrayTag;
 import com.sk89q.jnbt.CompoundTag;
@@ -10,6 +11,7 @@ import com.sk89q.jnbt.DoubleTag;
 import com.sk89q.jnbt.FloatTag;
 import com.sk89q.jnbt.IntTag;
 import com.sk89q.jnbt.ListTag;
+import com.sk89q.jnbt.NBTConstants;
 import com.sk89q.jnbt.NBTOutputStream;
 import com.sk89q.jnbt.ShortTag;
 import com.sk89q.jnbt.StringTag;
@@ -23,8 +25,11 @@ import com.sk89q.worldedit.extent.clipboard.Clipboard;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.util.Location;
 import com.sk89q.worldedit.world.registry.WorldData;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -39,6 +44,7 @@ public class SchematicWriter implements ClipboardWriter {
 
     private static final int MAX_SIZE = Short.MAX_VALUE - Short.MIN_VALUE;
     private final NBTOutputStream outputStream;
+    private final DataOutputStream rawStream;
 
     /**
      * Create a new schematic writer.
@@ -48,6 +54,19 @@ public class SchematicWriter implements ClipboardWriter {
     public SchematicWriter(NBTOutputStream outputStream) {
         checkNotNull(outputStream);
         this.outputStream = outputStream;
+        this.rawStream = null;
+    }
+
+    /**
+     * Create a new schematic writer which streams the blocks straight to the output<br>
+     *  - The Blocks / Data / AddBlocks arrays are written a layer at a time, so are never held in memory
+     *
+     * @param outputStream the (uncompressed) output stream to write the NBT to
+     */
+    public SchematicWriter(OutputStream outputStream) {
+        checkNotNull(outputStream);
+        this.rawStream = new DataOutputStream(outputStream);
+        this.outputStream = new NBTOutputStream(rawStream);
     }
 
     private static class ForEach extends RunnableVal2<Vector, BaseBlock> {
@@ -107,18 +126,258 @@ public class SchematicWriter implements ClipboardWriter {
 
     @Override
     public void write(Clipboard clipboard, WorldData data) throws IOException {
-        outputStream.writeNamedTag("Schematic", writeTag(clipboard));
+        if (rawStream == null) {
+            outputStream.writeNamedTag("Schematic", writeTag(clipboard));
+        } else {
+            try {
+                writeStream(clipboard);
+            } catch (RuntimeException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw e;
+            }
+        }
     }
 
-    public static CompoundTag writeTag(Clipboard clipboard) {
+    /**
+     * Fills one layer of an array, which is written out as soon as the next layer is started
+     */
+    private abstract class LayerWriter extends RunnableVal2<Vector, BaseBlock> {
+        private final int width;
+        private final byte[] layer;
+        private int y;
+
+        public LayerWriter(int width, int length) {
+            this.width = width;
+            this.layer = new byte[width * length];
+        }
+
+        @Override
+        public void run(Vector point, BaseBlock block) {
+            int y = (int) point.y;
+            while (this.y < y) {
+                writeLayer();
+            }
+            set(layer, (int) point.z * width + (int) point.x, block);
+        }
+
+        public abstract void set(byte[] layer, int index, BaseBlock block);
+
+        public void write(byte[] layer) throws IOException {
+            rawStream.write(layer);
+        }
+
+        private void writeLayer() {
+            try {
+                write(layer);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            Arrays.fill(layer, (byte) 0);
+            y++;
+        }
+
+        public void finish(int height) throws IOException {
+            while (y < height) {
+                writeLayer();
+            }
+        }
+    }
+
+    /**
+     * Packs the add ids two to a byte, carrying the odd nibble over to the next layer
+     */
+    private class AddWriter extends LayerWriter {
+        private int index;
+        private int pending;
+
+        public AddWriter(int width, int length) {
+            super(width, length);
+        }
+
+        @Override
+        public void set(byte[] layer, int index, BaseBlock block) {
+            int id = block.getId();
+            if (id > 255) {
+                layer[index] = (byte) ((id >> 8) & 0xF);
+            }
+        }
+
+        @Override
+        public void write(byte[] layer) throws IOException {
+            for (byte add : layer) {
+                if ((index++ & 1) == 0) {
+                    pending = add;
+                } else {
+                    rawStream.write(pending | (add << 4));
+                }
+            }
+        }
+
+        @Override
+        public void finish(int height) throws IOException {
+            super.finish(height);
+            if ((index & 1) == 1) {
+                rawStream.write(pending);
+            } else {
+                // Matches the (volume >> 1) + 1 length of the array
+                rawStream.write(0);
+            }
+        }
+    }
+
+    private void writeStream(Clipboard clipboard) throws IOException {
         Region region = clipboard.getRegion();
         Vector origin = clipboard.getOrigin();
         Vector min = region.getMinimumPoint();
         Vector offset = min.subtract(origin);
+        final int width = region.getWidth();
+        final int height = region.getHeight();
+        final int length = region.getLength();
+        checkSize(width, height, length);
+        final int volume = width * height * length;
+
+        writeNamedTagName("Schematic", NBTConstants.TYPE_COMPOUND);
+        outputStream.writeNamedTag("Width", new ShortTag((short) width));
+        outputStream.writeNamedTag("Length", new ShortTag((short) length));
+        outputStream.writeNamedTag("Height", new ShortTag((short) height));
+        outputStream.writeNamedTag("Materials", new StringTag("Alpha"));
+        outputStream.writeNamedTag("WEOriginX", new IntTag(min.getBlockX()));
+        outputStream.writeNamedTag("WEOriginY", new IntTag(min.getBlockY()));
+        outputStream.writeNamedTag("WEOriginZ", new IntTag(min.getBlockZ()));
+        outputStream.writeNamedTag("WEOffsetX", new IntTag(offset.getBlockX()));
+        outputStream.writeNamedTag("WEOffsetY", new IntTag(offset.getBlockY()));
+        outputStream.writeNamedTag("WEOffsetZ", new IntTag(offset.getBlockZ()));
+
+        // Each array is a separate pass over the clipboard, which only ever buffers a single layer
+        final int[] counts = new int[2];
+        writeNamedTagName("Blocks", NBTConstants.TYPE_BYTE_ARRAY);
+        rawStream.writeInt(volume);
+        LayerWriter blocks = new LayerWriter(width, length) {
+            @Override
+            public void set(byte[] layer, int index, BaseBlock block) {
+                int id = block.getId();
+                layer[index] = (byte) id;
+                if (id > 255) {
+                    counts[0]++;
+                }
+                if (block.getNbtData() != null) {
+                    counts[1]++;
+                }
+            }
+        };
+        forEach(clipboard, blocks);
+        blocks.finish(height);
+
+        writeNamedTagName("Data", NBTConstants.TYPE_BYTE_ARRAY);
+        rawStream.writeInt(volume);
+        LayerWriter datas = new LayerWriter(width, length) {
+            @Override
+            public void set(byte[] layer, int index, BaseBlock block) {
+                if (FaweCache.hasData(block.getId())) {
+                    layer[index] = (byte) block.getData();
+                }
+            }
+        };
+        forEach(clipboard, datas);
+        datas.finish(height);
+
+        if (counts[0] != 0) {
+            writeNamedTagName("AddBlocks", NBTConstants.TYPE_BYTE_ARRAY);
+            rawStream.writeInt((volume >> 1) + 1);
+            AddWriter adds = new AddWriter(width, length);
+            forEach(clipboard, adds);
+            adds.finish(height);
+        }
+
+        // Tiles are written as they are found, rather than collected into a ListTag
+        writeNamedTagName("TileEntities", NBTConstants.TYPE_LIST);
+        rawStream.writeByte(NBTConstants.TYPE_COMPOUND);
+        rawStream.writeInt(counts[1]);
+        if (counts[1] != 0) {
+            forEach(clipboard, new RunnableVal2<Vector, BaseBlock>() {
+                @Override
+                public void run(Vector point, BaseBlock block) {
+                    CompoundTag rawTag = block.getNbtData();
+                    if (rawTag == null) {
+                        return;
+                    }
+                    try {
+                        for (Map.Entry<String, Tag> entry : rawTag.getValue().entrySet()) {
+                            switch (entry.getKey()) {
+                                case "id":
+                                case "x":
+                                case "y":
+                                case "z":
+                                    continue;
+                                default:
+                                    outputStream.writeNamedTag(entry.getKey(), entry.getValue());
+                            }
+                        }
+                        outputStream.writeNamedTag("id", new StringTag(block.getNbtId()));
+                        outputStream.writeNamedTag("x", new IntTag((int) point.x));
+                        outputStream.writeNamedTag("y", new IntTag((int) point.y));
+                        outputStream.writeNamedTag("z", new IntTag((int) point.z));
+                        rawStream.writeByte(NBTConstants.TYPE_END);
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+        }
+
+        outputStream.writeNamedTag("Entities", new ListTag(CompoundTag.class, writeEntities(clipboard)));
+        rawStream.writeByte(NBTConstants.TYPE_END);
+        rawStream.flush();
+    }
+
+    private void writeNamedTagName(String name, int type) throws IOException {
+        byte[] nameBytes = name.getBytes(NBTConstants.CHARSET);
+        rawStream.writeByte(type);
+        rawStream.writeShort(nameBytes.length);
+        rawStream.write(nameBytes);
+    }
+
+    /**
+     * Run a task for each non air block in y, z, x order (relative to the clipboard min)
+     */
+    private static void forEach(Clipboard clipboard, RunnableVal2<Vector, BaseBlock> task) {
+        if (clipboard instanceof BlockArrayClipboard) {
+            FaweClipboard faweClip = ((BlockArrayClipboard) clipboard).IMP;
+            // A read only clipboard iterates in region order
+            if (!(faweClip instanceof ReadOnlyClipboard)) {
+                faweClip.forEach(task, false);
+                return;
+            }
+        }
+        Region region = clipboard.getRegion();
+        Vector min = region.getMinimumPoint();
         int width = region.getWidth();
         int height = region.getHeight();
         int length = region.getLength();
+        Vector pos = new Vector(0, 0, 0);
+        Vector mutable = new Vector(0, 0, 0);
+        for (int y = 0; y < height; y++) {
+            for (int z = 0; z < length; z++) {
+                for (int x = 0; x < width; x++) {
+                    pos.x = min.x + x;
+                    pos.y = min.y + y;
+                    pos.z = min.z + z;
+                    BaseBlock block = clipboard.getBlock(pos);
+                    if (block.getId() == 0) {
+                        continue;
+                    }
+                    mutable.x = x;
+                    mutable.y = y;
+                    mutable.z = z;
+                    task.run(mutable, block);
+                }
+            }
+        }
+    }
 
+    private static void checkSize(int width, int height, int length) {
         if (width > MAX_SIZE) {
             throw new IllegalArgumentException("Width of region too large for a .schematic");
         }
@@ -128,6 +387,18 @@ public class SchematicWriter implements ClipboardWriter {
         if (length > MAX_SIZE) {
             throw new IllegalArgumentException("Length of region too large for a .schematic");
         }
+    }
+
+    public static CompoundTag writeTag(Clipboard clipboard) {
+        Region region = clipboard.getRegion();
+        Vector origin = clipboard.getOrigin();
+        Vector min = region.getMinimumPoint();
+        Vector offset = min.subtract(origin);
+        int width = region.getWidth();
+        int height = region.getHeight();
+        int length = region.getLength();
+
+        checkSize(width, height, length);
 
         // ====================================================================
         // Metadata
@@ -186,6 +457,13 @@ public class SchematicWriter implements ClipboardWriter {
             schematic.put("AddBlocks", new ByteArrayTag(addBlocks));
         }
 
+        schematic.put("Entities", new ListTag(CompoundTag.class, writeEntities(clipboard)));
+
+        CompoundTag schematicTag = new CompoundTag(schematic);
+        return schematicTag;
+    }
+
+    private static List<Tag> writeEntities(Clipboard clipboard) {
         List<Tag> entities = new ArrayList<Tag>();
         for (Entity entity : clipboard.getEntities()) {
             BaseEntity state = entity.getState();
@@ -208,11 +486,7 @@ public class SchematicWriter implements ClipboardWriter {
                 entities.add(entityTag);
             }
         }
-
-        schematic.put("Entities", new ListTag(CompoundTag.class, entities));
-
-        CompoundTag schematicTag = new CompoundTag(schematic);
-        return schematicTag;
+        return entities;
     }
 
     private static Tag writeVector(Vector vector, String name) {
@@ -2,6 +2,7 @@ package com.boydti.fawe.forge;
 
 import com.boydti.fawe.Fawe;
 import com.boydti.fawe.object.FawePlayer;
+import com.boydti.fawe.util.WEManager;
 import cpw.mods.fml.common.FMLCommonHandler;
 import cpw.mods.fml.common.Mod;
 import cpw.mods.fml.common.event.FMLPreInitializationEvent;
@@ -72,6 +73,7 @@ public class ForgeMain {
         FawePlayer fp = FawePlayer.wrap(player);
         if (fp.getMeta("lastWorld") != event.world) {
             fp.setMeta("lastWorld", event.world);
+            WEManager.IMP.invalidateMask(fp);
         }
     }
 }
@@ -3,6 +3,7 @@ package com.boydti.fawe.forge.v0;
 import com.boydti.fawe.FaweCache;
 import com.boydti.fawe.example.CharFaweChunk;
 import com.boydti.fawe.object.FaweQueue;
+import com.boydti.fawe.object.collection.SectionPool;
 import com.boydti.fawe.util.MainUtil;
 import net.minecraft.world.World;
 import net.minecraft.world.chunk.Chunk;
@@ -40,7 +41,7 @@ public class ForgeChunk_All extends CharFaweChunk<Chunk> {
         byte[] vs = this.byteIds[i];
         char[] vs2 = this.ids[i];
         if (vs2 == null) {
-            vs2 = this.ids[i] = new char[4096];
+            vs2 = this.ids[i] = SectionPool.borrow();
         }
         if (vs == null) {
             vs = this.byteIds[i] = new byte[4096];
@@ -157,7 +158,7 @@ public class ForgeChunk_All extends CharFaweChunk<Chunk> {
             copy.count = count;
             copy.relight = relight;
         } else {
-            copy.byteIds = (byte[][]) MainUtil.copyNd(byteIds);
+            copy.byteIds = MainUtil.copy(byteIds);
             copy.datas = datas.clone();
             copy.air = air.clone();
             copy.biomes = biomes.clone();
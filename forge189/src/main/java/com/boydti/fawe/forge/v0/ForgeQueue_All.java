@@ -358,10 +358,12 @@ public class ForgeQueue_All extends NMSMappedFaweQueue<World, Chunk, ExtendedBlo
                 if ((section == null)) {
                     section = new ExtendedBlockStorage(j << 4, flag);
                     section.setData(newArray);
+                    fs.adoptSection(j);
                     sections[j] = section;
                     continue;
                 } else if (count >= 4096){
                     section.setData(newArray);
+                    fs.adoptSection(j);
                     setCount(0, count - fs.getAir(j), section);
                     continue;
                 }
@@ -4,6 +4,7 @@ import com.boydti.fawe.Fawe;
 import com.boydti.fawe.FaweAPI;
 import com.boydti.fawe.config.Settings;
 import com.boydti.fawe.object.FawePlayer;
+import com.boydti.fawe.util.WEManager;
 import com.google.inject.Inject;
 import org.slf4j.Logger;
 import org.spongepowered.api.Game;
@@ -64,16 +65,16 @@ public class SpongeMain {
 
     @Listener
     public void onMove(DisplaceEntityEvent.TargetPlayer event) {
-        if (Settings.HISTORY.USE_DISK) {
-            World from = event.getFromTransform().getExtent();
-            World to = event.getToTransform().getExtent();
-            if (!from.equals(to)) {
-                Player player = event.getTargetEntity();
-                FawePlayer fp = FawePlayer.wrap(player);
+        World from = event.getFromTransform().getExtent();
+        World to = event.getToTransform().getExtent();
+        if (!from.equals(to)) {
+            Player player = event.getTargetEntity();
+            FawePlayer fp = FawePlayer.wrap(player);
+            WEManager.IMP.invalidateMask(fp);
+            if (Settings.HISTORY.USE_DISK) {
                 com.sk89q.worldedit.world.World world = FaweAPI.getWorld(to.getName());
                 fp.getSession().clearHistory();
                 fp.loadSessionsFromDisk(world);
-                return;
             }
         }
     }
@@ -416,10 +416,12 @@ public class SpongeQueue_1_8 extends NMSMappedFaweQueue<World, net.minecraft.wor
                 if ((section == null)) {
                     section = new ExtendedBlockStorage(j << 4, flag);
                     section.setData(newArray);
+                    fs.adoptSection(j);
                     sections[j] = section;
                     continue;
                 } else if (count >= 4096){
                     section.setData(newArray);
+                    fs.adoptSection(j);
                     setCount(0, count - fs.getAir(j), section);
                     continue;
                 }